@@ -0,0 +1,31 @@
+import numpy as np
+
+# Layout written by sim.ObservableSeries (little-endian), see its class comment.
+MAGIC = b"CZOBS001"
+
+
+def load_observables(path):
+    """Read a .obs file.
+
+    Returns a dict with the run metadata and `series`, a structured array with
+    one float32 field per column (step, polarization, milling, gyration_radius,
+    nn_distance, aligned_g1, aligned_g2).
+    """
+    raw = np.fromfile(path, dtype=np.uint8)
+    if bytes(raw[:8]) != MAGIC:
+        raise ValueError(f"{path} is not an observables file")
+    header_bytes, rows, columns, every, n = np.frombuffer(raw[8:28], dtype="<i4")
+    align_deg = float(np.frombuffer(raw[28:32], dtype="<f4")[0])
+    seed = int(np.frombuffer(raw[32:40], dtype="<i8")[0])
+    names = [bytes(raw[40 + 16 * i:56 + 16 * i]).rstrip(b"\0").decode("ascii") for i in range(columns)]
+
+    row = np.dtype([(name, "<f4") for name in names])
+    series = np.frombuffer(raw[header_bytes:header_bytes + rows * row.itemsize].tobytes(), dtype=row)
+    return {"N": int(n), "every": int(every), "align_deg": align_deg, "seed": seed, "series": series}
+
+
+if __name__ == "__main__":
+    import sys
+    o = load_observables(sys.argv[1])
+    s = o["series"]
+    print(f"N={o['N']} seed={o['seed']} rows={len(s)} columns={s.dtype.names}")
@@ -0,0 +1,40 @@
+import numpy as np
+import pandas as pd
+
+# Layout written by sim.BinaryResultWriter: magic, int32 record size,
+# int32 field count, one 16-byte name per field, then fixed-width
+# little-endian records in the CSV column order.
+MAGIC = b"CZRES001"
+NAME_BYTES = 16
+INT_COLUMNS = {"run", "N", "n1", "n2", "seed"}
+
+
+def load_results_bin(path):
+    """Memory-map a .bin results file as a numpy structured array (no copy)."""
+    with open(path, "rb") as f:
+        head = f.read(16)
+        if head[:8] != MAGIC:
+            raise ValueError(f"{path} is not a results file")
+        fields = int.from_bytes(head[12:16], "little")
+        names = [f.read(NAME_BYTES).rstrip(b"\0").decode("ascii") for _ in range(fields)]
+    dtype = np.dtype([(n, "<i8" if n in INT_COLUMNS else "<f8") for n in names])
+    return np.memmap(path, dtype=dtype, mode="r", offset=16 + fields * NAME_BYTES)
+
+
+def load_results(path):
+    """Load a results file (.csv or .bin) into a DataFrame."""
+    if path.endswith(".bin"):
+        return pd.DataFrame(load_results_bin(path))
+    df = pd.read_csv(path)
+    df = df[df["run"] != "run"]  # drop repeated header rows
+    return df.apply(pd.to_numeric, errors="ignore")
+
+
+def load_summary(path):
+    """Load the per-cell summary (<output>.summary.csv, written with "summary": true)."""
+    return pd.read_csv(path)
+
+
+if __name__ == "__main__":
+    import sys
+    print(load_results(sys.argv[1]).describe())
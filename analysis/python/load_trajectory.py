@@ -0,0 +1,35 @@
+import numpy as np
+
+# Layout written by sim.TrajectoryRecorder (little-endian), see its class comment.
+MAGIC = b"CZTRJ001"
+
+
+def load_trajectory(path):
+    """Memory-map a .traj file.
+
+    Returns a dict with the run metadata and `frames`, a structured array with
+    fields `step` (float32) and `state` (float32, shape agents x 3: x, y, heading).
+    Only the frames actually written are included.
+    """
+    raw = np.memmap(path, dtype=np.uint8, mode="r")
+    if bytes(raw[:8]) != MAGIC:
+        raise ValueError(f"{path} is not a trajectory file")
+    header_bytes, capacity, agents, every, n = np.frombuffer(raw[8:28], dtype="<i4")
+    width, height = np.frombuffer(raw[28:36], dtype="<f4")
+    written = int(np.frombuffer(raw[36:40], dtype="<i4")[0])
+    seed = int(np.frombuffer(raw[40:48], dtype="<i8")[0])
+    indices = np.frombuffer(raw[48:48 + 4 * agents], dtype="<i4")
+    informed = np.frombuffer(raw[48 + 4 * agents:48 + 8 * agents], dtype="<i4")
+
+    frame = np.dtype([("step", "<f4"), ("state", "<f4", (int(agents), 3))])
+    frames = np.memmap(path, dtype=frame, mode="r", offset=int(header_bytes), shape=(written,))
+    return {
+        "N": int(n), "every": int(every), "width": float(width), "height": float(height),
+        "seed": seed, "agents": indices, "informed": informed, "frames": frames,
+    }
+
+
+if __name__ == "__main__":
+    import sys
+    t = load_trajectory(sys.argv[1])
+    print(f"N={t['N']} seed={t['seed']} frames={len(t['frames'])} agents={len(t['agents'])}")
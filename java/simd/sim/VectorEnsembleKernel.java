@@ -0,0 +1,78 @@
+package sim;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static sim.PairKernel.*;
+
+/**
+ * EnsembleKernel over SIMD lanes, one lane per replicate. Built and loaded
+ * like VectorPairKernel. Lanes never mix, every operation is the exact
+ * IEEE one of the scalar kernel (no fma) and each lane sums its neighbors in
+ * the same order, so the sums are bit-identical to ScalarEnsembleKernel's.
+ * Replicates beyond the last full vector go through the scalar kernel.
+ */
+public class VectorEnsembleKernel implements EnsembleKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final ScalarEnsembleKernel scalar = new ScalarEnsembleKernel();
+
+    @Override
+    public void accumulate(int i, int n, int R, double rRep2, double rOri2,
+                           double[] x, double[] y, double[] vx, double[] vy, double[] invSpeed,
+                           double width, double height, double[] acc) {
+        double halfW = width / 2.0, halfH = height / 2.0;
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+
+        int upper = SPECIES.loopBound(R);
+        int r = 0;
+        for (; r < upper; r += SPECIES.length()) {
+            DoubleVector px = DoubleVector.fromArray(SPECIES, x, i * R + r);
+            DoubleVector py = DoubleVector.fromArray(SPECIES, y, i * R + r);
+            DoubleVector repX = zero, repY = zero, attX = zero, attY = zero, oriX = zero, oriY = zero;
+            DoubleVector repCount = zero, socialCount = zero;
+
+            for (int j = 0, k = r; j < n; j++, k += R) {
+                DoubleVector dx = DoubleVector.fromArray(SPECIES, x, k).sub(px);
+                DoubleVector dy = DoubleVector.fromArray(SPECIES, y, k).sub(py);
+                dx = dx.sub(width, dx.compare(VectorOperators.GT, halfW))
+                       .add(width, dx.compare(VectorOperators.LT, -halfW));
+                dy = dy.sub(height, dy.compare(VectorOperators.GT, halfH))
+                       .add(height, dy.compare(VectorOperators.LT, -halfH));
+                DoubleVector d2 = dx.mul(dx).add(dy.mul(dy));
+
+                VectorMask<Double> rep = d2.compare(VectorOperators.LT, rRep2);
+                VectorMask<Double> social = d2.compare(VectorOperators.LT, rOri2).andNot(rep);
+                DoubleVector inv = one.div(d2.sqrt()).blend(zero, d2.compare(VectorOperators.EQ, 0.0));
+                DoubleVector ux = dx.mul(inv), uy = dy.mul(inv);
+
+                repX = repX.sub(ux, rep);
+                repY = repY.sub(uy, rep);
+                repCount = repCount.add(one, rep);
+                attX = attX.add(ux, social);
+                attY = attY.add(uy, social);
+                double s = invSpeed[j];
+                oriX = oriX.add(DoubleVector.fromArray(SPECIES, vx, k).mul(s), social);
+                oriY = oriY.add(DoubleVector.fromArray(SPECIES, vy, k).mul(s), social);
+                socialCount = socialCount.add(one, social);
+            }
+
+            repX.intoArray(acc, REP_X * R + r);
+            repY.intoArray(acc, REP_Y * R + r);
+            repCount.intoArray(acc, REP_COUNT * R + r);
+            attX.intoArray(acc, ATT_X * R + r);
+            attY.intoArray(acc, ATT_Y * R + r);
+            oriX.intoArray(acc, ORI_X * R + r);
+            oriY.intoArray(acc, ORI_Y * R + r);
+            socialCount.intoArray(acc, SOCIAL_COUNT * R + r);
+        }
+
+        if (r < R) {
+            scalar.accumulate(i, n, R, r, R, rRep2, rOri2, x, y, vx, vy, invSpeed, width, height, acc);
+        }
+    }
+}
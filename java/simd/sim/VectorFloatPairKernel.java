@@ -0,0 +1,97 @@
+package sim;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static sim.PairKernel.*;
+
+/**
+ * FloatPairKernel over SIMD lanes (jdk.incubator.vector): twice the lanes of
+ * VectorPairKernel per register. Loaded by name from
+ * FloatPairKernel.preferred(); as there, only the all-pairs scan is
+ * vectorized and scattered candidates go through the scalar kernel.
+ */
+public class VectorFloatPairKernel implements FloatPairKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private final ScalarFloatPairKernel scalar = new ScalarFloatPairKernel();
+
+    @Override
+    public void accumulate(float px, float py, float rRep2, float rOri2,
+                           float[] x, float[] y, float[] vx, float[] vy, float[] invSpeed,
+                           int[] idx, int count, float width, float height, float[] acc) {
+        if (idx != null) {
+            scalar.accumulate(px, py, rRep2, rOri2, x, y, vx, vy, invSpeed, idx, count, width, height, acc);
+            return;
+        }
+        float halfW = width / 2f, halfH = height / 2f;
+        FloatVector zero = FloatVector.zero(SPECIES);
+        FloatVector one = FloatVector.broadcast(SPECIES, 1f);
+        FloatVector repX = zero, repY = zero, attX = zero, attY = zero, oriX = zero, oriY = zero;
+        int repCount = 0, socialCount = 0;
+
+        int upper = SPECIES.loopBound(count);
+        int j = 0;
+        for (; j < upper; j += SPECIES.length()) {
+            FloatVector dx = FloatVector.fromArray(SPECIES, x, j).sub(px);
+            FloatVector dy = FloatVector.fromArray(SPECIES, y, j).sub(py);
+            dx = dx.sub(width, dx.compare(VectorOperators.GT, halfW))
+                   .add(width, dx.compare(VectorOperators.LT, -halfW));
+            dy = dy.sub(height, dy.compare(VectorOperators.GT, halfH))
+                   .add(height, dy.compare(VectorOperators.LT, -halfH));
+            FloatVector d2 = dx.fma(dx, dy.mul(dy));
+
+            VectorMask<Float> rep = d2.compare(VectorOperators.LT, rRep2);
+            VectorMask<Float> social = d2.compare(VectorOperators.LT, rOri2).andNot(rep);
+            FloatVector inv = one.div(d2.sqrt()).blend(zero, d2.compare(VectorOperators.EQ, 0f));
+            FloatVector ux = dx.mul(inv), uy = dy.mul(inv);
+
+            repX = repX.sub(ux, rep);
+            repY = repY.sub(uy, rep);
+            attX = attX.add(ux, social);
+            attY = attY.add(uy, social);
+            FloatVector s = FloatVector.fromArray(SPECIES, invSpeed, j);
+            oriX = oriX.add(FloatVector.fromArray(SPECIES, vx, j).mul(s), social);
+            oriY = oriY.add(FloatVector.fromArray(SPECIES, vy, j).mul(s), social);
+            repCount += rep.trueCount();
+            socialCount += social.trueCount();
+        }
+
+        float rx = repX.reduceLanes(VectorOperators.ADD), ry = repY.reduceLanes(VectorOperators.ADD);
+        float ax = attX.reduceLanes(VectorOperators.ADD), ay = attY.reduceLanes(VectorOperators.ADD);
+        float ox = oriX.reduceLanes(VectorOperators.ADD), oy = oriY.reduceLanes(VectorOperators.ADD);
+
+        // tail
+        for (; j < count; j++) {
+            float dx = x[j] - px;
+            float dy = y[j] - py;
+            dx = dx > halfW ? dx - width : dx < -halfW ? dx + width : dx;
+            dy = dy > halfH ? dy - height : dy < -halfH ? dy + height : dy;
+            float d2 = dx * dx + dy * dy;
+            float inv = d2 > 0 ? 1f / (float) Math.sqrt(d2) : 0f;
+            if (d2 < rRep2) {
+                rx -= dx * inv;
+                ry -= dy * inv;
+                repCount++;
+            } else if (d2 < rOri2) {
+                ax += dx * inv;
+                ay += dy * inv;
+                ox += vx[j] * invSpeed[j];
+                oy += vy[j] * invSpeed[j];
+                socialCount++;
+            }
+        }
+
+        acc[REP_X] = rx;
+        acc[REP_Y] = ry;
+        acc[REP_COUNT] = repCount;
+        acc[ATT_X] = ax;
+        acc[ATT_Y] = ay;
+        acc[ORI_X] = ox;
+        acc[ORI_Y] = oy;
+        acc[SOCIAL_COUNT] = socialCount;
+    }
+}
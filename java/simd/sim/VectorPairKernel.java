@@ -0,0 +1,97 @@
+package sim;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * PairKernel over SIMD lanes (jdk.incubator.vector). Kept out of java/src
+ * because it only compiles and runs with --add-modules jdk.incubator.vector;
+ * PairKernel.preferred() loads it by name and falls back to ScalarPairKernel.
+ *
+ * Only the all-pairs scan (contiguous neighbors) is vectorized; grid
+ * candidates are scattered and go through the scalar kernel.
+ */
+public class VectorPairKernel implements PairKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final ScalarPairKernel scalar = new ScalarPairKernel();
+
+    @Override
+    public void accumulate(double px, double py, double rRep2, double rOri2,
+                           double[] x, double[] y, double[] vx, double[] vy, double[] invSpeed,
+                           int[] idx, int count, double width, double height, double[] acc) {
+        if (idx != null) {
+            scalar.accumulate(px, py, rRep2, rOri2, x, y, vx, vy, invSpeed, idx, count, width, height, acc);
+            return;
+        }
+        double halfW = width / 2.0, halfH = height / 2.0;
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        DoubleVector repX = zero, repY = zero, attX = zero, attY = zero, oriX = zero, oriY = zero;
+        int repCount = 0, socialCount = 0;
+
+        int upper = SPECIES.loopBound(count);
+        int j = 0;
+        for (; j < upper; j += SPECIES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, x, j).sub(px);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, y, j).sub(py);
+            dx = dx.sub(width, dx.compare(VectorOperators.GT, halfW))
+                   .add(width, dx.compare(VectorOperators.LT, -halfW));
+            dy = dy.sub(height, dy.compare(VectorOperators.GT, halfH))
+                   .add(height, dy.compare(VectorOperators.LT, -halfH));
+            DoubleVector d2 = dx.fma(dx, dy.mul(dy));
+
+            VectorMask<Double> rep = d2.compare(VectorOperators.LT, rRep2);
+            VectorMask<Double> social = d2.compare(VectorOperators.LT, rOri2).andNot(rep);
+            DoubleVector inv = one.div(d2.sqrt()).blend(zero, d2.compare(VectorOperators.EQ, 0.0));
+            DoubleVector ux = dx.mul(inv), uy = dy.mul(inv);
+
+            repX = repX.sub(ux, rep);
+            repY = repY.sub(uy, rep);
+            attX = attX.add(ux, social);
+            attY = attY.add(uy, social);
+            DoubleVector s = DoubleVector.fromArray(SPECIES, invSpeed, j);
+            oriX = oriX.add(DoubleVector.fromArray(SPECIES, vx, j).mul(s), social);
+            oriY = oriY.add(DoubleVector.fromArray(SPECIES, vy, j).mul(s), social);
+            repCount += rep.trueCount();
+            socialCount += social.trueCount();
+        }
+
+        double rx = repX.reduceLanes(VectorOperators.ADD), ry = repY.reduceLanes(VectorOperators.ADD);
+        double ax = attX.reduceLanes(VectorOperators.ADD), ay = attY.reduceLanes(VectorOperators.ADD);
+        double ox = oriX.reduceLanes(VectorOperators.ADD), oy = oriY.reduceLanes(VectorOperators.ADD);
+
+        // tail
+        for (; j < count; j++) {
+            double dx = x[j] - px;
+            double dy = y[j] - py;
+            dx = dx > halfW ? dx - width : dx < -halfW ? dx + width : dx;
+            dy = dy > halfH ? dy - height : dy < -halfH ? dy + height : dy;
+            double d2 = dx * dx + dy * dy;
+            double inv = d2 > 0 ? 1.0 / Math.sqrt(d2) : 0.0;
+            if (d2 < rRep2) {
+                rx -= dx * inv;
+                ry -= dy * inv;
+                repCount++;
+            } else if (d2 < rOri2) {
+                ax += dx * inv;
+                ay += dy * inv;
+                ox += vx[j] * invSpeed[j];
+                oy += vy[j] * invSpeed[j];
+                socialCount++;
+            }
+        }
+
+        acc[REP_X] = rx;
+        acc[REP_Y] = ry;
+        acc[REP_COUNT] = repCount;
+        acc[ATT_X] = ax;
+        acc[ATT_Y] = ay;
+        acc[ORI_X] = ox;
+        acc[ORI_Y] = oy;
+        acc[SOCIAL_COUNT] = socialCount;
+    }
+}
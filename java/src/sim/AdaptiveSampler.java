@@ -0,0 +1,126 @@
+package sim;
+
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sequential stopping for replicates: each cell starts with min_runs and
+ * then gets further batches until the confidence interval of its mean
+ * direction (and optionally of its bounding box) is narrow enough, or
+ * max_runs is reached. Cells with a clear outcome stop early; cells near a
+ * bifurcation, whose directions are spread out or bimodal, get the budget.
+ *
+ * Config: "adaptive": {"min_runs": 20, "max_runs": 400, "batch": 10,
+ *                      "direction_ci_deg": 5, "bbox_ci": 0, "z": 1.96}
+ * (ci values are full interval widths; bbox_ci 0 = ignore the bounding box)
+ */
+public class AdaptiveSampler {
+
+    /** Progress of one cell. Guarded by its own monitor. */
+    public static class CellState {
+        public final ParameterGrid.Cell cell;
+        public final CellStats stats = new CellStats();
+        private final Set<Integer> resumedRuns = new HashSet<>();
+        private int lastRun;
+        private int inFlight;
+        private boolean failed; // a run threw; no further batches
+
+        CellState(ParameterGrid.Cell cell) {
+            this.cell = cell;
+        }
+
+        /** No runs in flight and none left to schedule. */
+        public synchronized boolean finished() {
+            return inFlight == 0;
+        }
+
+        /** A run of the cell threw, so it got no batches after that one. */
+        public synchronized boolean failed() {
+            return failed;
+        }
+    }
+
+    private final int minRuns, maxRuns, batch;
+    private final double directionWidth; // radians
+    private final double bboxWidth;
+    private final double z;
+
+    public AdaptiveSampler(JSONObject adaptive) {
+        minRuns = adaptive.optInt("min_runs", 20);
+        maxRuns = adaptive.optInt("max_runs", 400);
+        batch = adaptive.optInt("batch", 10);
+        directionWidth = Math.toRadians(adaptive.optDouble("direction_ci_deg", 5.0));
+        bboxWidth = adaptive.optDouble("bbox_ci", 0.0);
+        z = adaptive.optDouble("z", 1.96);
+    }
+
+    /**
+     * Start a cell, counting runs already in the output (keyed as RunRecord.key)
+     * towards its statistics, and return the first runs to schedule.
+     */
+    public CellState start(ParameterGrid.Cell cell, Map<String, double[]> done, List<Integer> runs) {
+        CellState s = new CellState(cell);
+        for (int run = 1; run <= maxRuns; run++) {
+            double[] o = done.get(RunRecord.key(run, cell));
+            if (o != null) {
+                s.stats.add(o[0], o[1], o[2], o[3]);
+                s.resumedRuns.add(run);
+            }
+        }
+        synchronized (s) {
+            runs.addAll(nextRuns(s));
+        }
+        return s;
+    }
+
+    /**
+     * Record a finished run; once the cell's current batch is complete, return
+     * the next runs to schedule (empty when the cell is done).
+     */
+    public List<Integer> complete(CellState s, RunRecord r) {
+        synchronized (s) {
+            s.stats.add(r.dirX, r.dirY, r.bboxX, r.bboxY);
+            s.inFlight--;
+            return s.inFlight == 0 && !s.failed ? nextRuns(s) : new ArrayList<>();
+        }
+    }
+
+    /**
+     * Record a run that threw: it no longer counts as in flight, and the cell
+     * stops after the runs of its current batch.
+     */
+    public void fail(CellState s) {
+        synchronized (s) {
+            s.failed = true;
+            s.inFlight--;
+        }
+    }
+
+    public boolean converged(CellStats stats) {
+        if (2 * stats.directionHalfWidth(z) > directionWidth) return false;
+        return bboxWidth <= 0 || 2 * stats.bboxHalfWidth(z) <= bboxWidth;
+    }
+
+    /** Full width of the direction interval, in degrees. */
+    public double directionWidthDeg(CellStats stats) {
+        return Math.toDegrees(2 * stats.directionHalfWidth(z));
+    }
+
+    private List<Integer> nextRuns(CellState s) {
+        List<Integer> runs = new ArrayList<>();
+        int n = s.stats.count();
+        if (n >= minRuns && (n >= maxRuns || converged(s.stats))) return runs;
+
+        int want = n < minRuns ? minRuns - n : Math.min(batch, maxRuns - n);
+        while (runs.size() < want) {
+            int run = ++s.lastRun;
+            if (!s.resumedRuns.contains(run)) runs.add(run);
+        }
+        s.inFlight = runs.size();
+        return runs;
+    }
+}
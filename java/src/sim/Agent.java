@@ -1,31 +1,21 @@
 package sim;
 
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Agent for Couzin-style flocking (plain Java version of your Processing Agent).
  * Display / color code removed. Use update(others, width, height, rng).
+ * All randomness comes from the run's own SplittableRandom, so a run is
+ * reproducible from its seed.
  */
 public class Agent {
     public Vec2 pos;       // position
     public Vec2 vel;       // direction * speed
-    public int informed;   // 0 = naive, 1/2 = informed types
-    public Vec2 g;         // preference vector (unit vector), zero for naive
-
-    public double speed = 1.0;
-    public double maxTurn = 0.3;   // maximum angle per step (radians)
-    // feedback weights not used currently
-    public double weight_inc = 0.008;
-    public double weight_dec = 0.0006;
-    public boolean useFeedback;
-
-    // Zone radii
-    public double R_rep = 2*12;   // zone of repulsion
-    public double R_ori = 2.5*92;   // zone of orientation + attraction
-    public double w = 0.35;     // weight for preference vector (was 0.20 before))
-    public double w_max = 0.45; // maximum weight for preference vector
- 
+    public int informed;   // type: index of the species in the run's table (0 = naive, 1/2 = informed types)
+    public final Species species; // parameters shared by the agents of this type
+    public double w;       // current weight for preference vector (changes with feedback)
+
     //public double noise = 0.0; // angular noise standard deviation
 
 
@@ -33,24 +23,16 @@ public class Agent {
         double x, 
         double y, 
         int informed, 
-        Vec2 g,
-        boolean useFeedback) 
+        Species species,
+        SplittableRandom rng) 
         
         {
         this.pos = new Vec2(x, y);
-        double angle = Math.random() * 2 * Math.PI;
+        double angle = rng.nextDouble() * 2 * Math.PI;
         this.vel = Vec2.fromAngle(angle);
         this.informed = informed;
-        if (informed != 0 && g != null) {
-            this.g = g.copy().normalize();
-        } else {
-            this.g = new Vec2(0, 0); // no preference
-        }
-
-        this.useFeedback = useFeedback;
-        if (useFeedback) {
-            w = 0.10; // lower initial weight
-        }
+        this.species = species;
+        this.w = species.w;
     }
 
     /**
@@ -58,9 +40,9 @@ public class Agent {
      * @param others list of all agents in the flock (including this one)
      * @param width toroidal width of simulation
      * @param height toroidal height of simulation
-     * @param rng Random instance (used for gaussian noise)
+     * @param rng the run's random stream (used for gaussian noise)
      */
-    public void update(List<Agent> others, double width, double height, Random rng) {
+    public void update(List<Agent> others, double width, double height, SplittableRandom rng) {
         // 1. REPULSION
         Vec2 repulsion = new Vec2(0, 0);
         boolean hasRepulsion = false;
@@ -73,12 +55,12 @@ public class Agent {
         for (Agent o : others) {
             double d = periodicDist(this.pos, o.pos, width, height);
 
-            if (o != this && d < R_rep) {
+            if (o != this && d < species.R_rep) {
                 // vector away from neighbor (periodic)
                 Vec2 away = periodicVector(this.pos, o.pos, width, height).mult(-1).normalize();
                 repulsion.add(away);
                 hasRepulsion = true;
-            } else if (d < R_ori) {
+            } else if (d < species.R_ori) {
                 // attraction: unit vector toward neighbor (skip self)
                 if (o != this) {
                     Vec2 toNbr = periodicVector(this.pos, o.pos, width, height).copy().normalize();
@@ -110,19 +92,19 @@ public class Agent {
         }
 
         // 4. ADD PREFERENCE (informed individuals only)
-        if (this.informed != 0) {
+        if (species.informed) {
 
-            Vec2 pref = this.g.copy();
+            Vec2 pref = new Vec2(species.gx, species.gy);
 
             // use feedback to adjust weight
-            if (useFeedback) {
+            if (species.useFeedback) {
                 double angleBetween = angleBetweenVectors(this.vel, pref);
                 // compute alignment with group direction and increase/decrease weight w if
                 // aligned/misaligned (threshold is 10 degrees )
-                if (Math.abs(angleBetween) < 0.17 && w < w_max ) {           // 10 degrees = 0.17 rad
-                    this.w += weight_inc;
+                if (Math.abs(angleBetween) < 0.17 && w < species.w_max ) {           // 10 degrees = 0.17 rad
+                    this.w += species.weight_inc;
                 } else if(w > 0.0) { // only decrease if above zero
-                    this.w -= weight_dec;
+                    this.w -= species.weight_dec;
                 }
 
             }
@@ -136,8 +118,8 @@ public class Agent {
         // 5. MAX TURNING RATE
         double angleBetween = angleBetweenVectors(this.vel, desired);
         double sign = turnSign(this.vel, desired);
-        if (Math.abs(angleBetween) > maxTurn) {
-            this.vel.rotate(sign * maxTurn);
+        if (Math.abs(angleBetween) > species.maxTurn) {
+            this.vel.rotate(sign * species.maxTurn);
         } else {
             this.vel = desired.copy();
         }
@@ -147,7 +129,7 @@ public class Agent {
         //this.vel.rotate(noiseAngle);
 
         this.vel.normalize();
-        this.vel.mult(speed);
+        this.vel.mult(species.speed);
 
         // 7. UPDATE POSITION + WRAP
         this.pos.add(this.vel);
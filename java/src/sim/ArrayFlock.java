@@ -0,0 +1,663 @@
+package sim;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Structure-of-arrays flock: positions, velocities, preference vectors and
+ * weights live in primitive arrays and a step allocates nothing.
+ *
+ * The kernel follows Agent.update operation for operation (same sequential,
+ * in-place semantics and the same floating-point expressions), so a flock
+ * built from the same initial agents evolves exactly like the object Flock.
+ *
+ * In SYNCHRONOUS mode every agent reads the front buffers and writes its new
+ * heading and position to the back buffers, which are swapped after the step.
+ * Agents no longer depend on each other within a step, so the step can be
+ * split across a ForkJoinPool.
+ *
+ * The FAST kernel computes the same model without transcendental functions:
+ * zones are tested on squared distances, the neighbor scan is a PairKernel
+ * (SIMD when available) and the turn is clamped with dot and cross products
+ * against precomputed cos/sin of maxTurn instead of acos and rotate. Results
+ * agree with EXACT to rounding, not bit for bit.
+ */
+public class ArrayFlock implements FlockEngine {
+
+    /** Order in which agents see each other's moves within a step. */
+    public enum UpdateMode {
+        SEQUENTIAL,  // in place: agent i+1 already sees agent i's new state (as Flock)
+        SYNCHRONOUS  // double-buffered: every agent sees the state at the start of the step
+    }
+
+    /** Arithmetic of one agent's step. */
+    public enum Kernel {
+        EXACT, // operation for operation as Agent.update (bit-identical to Flock)
+        FAST   // trig-free, vectorizable neighbor scan (see class comment)
+    }
+
+    // |angle to target| < 0.17 rad, the feedback condition of Agent.update, as a dot product
+    private static final double COS_FEEDBACK = Math.cos(0.17);
+
+    // agents per fork-join leaf; smaller chunks cost more in task overhead than they gain
+    private static final int MIN_CHUNK = 128;
+
+    private final int n;
+
+    // state (front buffers)
+    private double[] x, y;     // position
+    private double[] vx, vy;   // direction * speed
+    private final double[] w;  // preference weight (changes with feedback, read only by its owner)
+
+    // back buffers for SYNCHRONOUS mode, allocated on first use
+    private double[] backX, backY, backVx, backVy;
+
+    // per-agent type and the shared parameters of each type, from the spawned agents
+    private final int[] informed;
+    private Species[] species = new Species[0];
+    // 1 / speed per agent: the FAST pair scan reads it for every neighbor
+    private final double[] invSpeed;
+
+    private Flock.NeighborMode neighborMode = Flock.NeighborMode.ALL_PAIRS;
+    private final NeighborGrid grid = new NeighborGrid();
+    private final double maxRadius, maxSpeed;
+    private final KdTree tree = new KdTree(); // TOPOLOGICAL
+    private int nearestK = 7;
+    private VerletList verlet = new VerletList(VerletList.DEFAULT_SKIN);
+
+    private UpdateMode updateMode = UpdateMode.SEQUENTIAL;
+    private ForkJoinPool pool; // null: synchronous steps run on the calling thread
+
+    private Kernel kernel = Kernel.EXACT;
+    private PairKernel pairs = PairKernel.preferred();
+
+    // per-thread buffers: neighbor candidates, kNN search state and PairKernel sums
+    private static final class Scratch {
+        final int[] candidates;
+        final double[] acc = new double[PairKernel.ACC_SIZE];
+        KdTree.Search search;
+
+        Scratch(int n) {
+            candidates = new int[n];
+        }
+    }
+
+    private final Scratch scratch;
+    private long pairEvaluations; // see FlockEngine.pairEvaluations
+    private final ThreadLocal<Scratch> workerScratch;
+
+    /**
+     * Copy the initial state of the given agents.
+     */
+    public ArrayFlock(List<Agent> agents) {
+        n = agents.size();
+        x = new double[n];
+        y = new double[n];
+        vx = new double[n];
+        vy = new double[n];
+        w = new double[n];
+        informed = new int[n];
+        invSpeed = new double[n];
+        scratch = new Scratch(n);
+
+        double radius = 0, fastest = 0;
+        for (int i = 0; i < n; i++) {
+            Agent a = agents.get(i);
+            x[i] = a.pos.x;
+            y[i] = a.pos.y;
+            vx[i] = a.vel.x;
+            vy[i] = a.vel.y;
+            w[i] = a.w;
+            informed[i] = a.informed;
+            if (a.informed >= species.length) species = Arrays.copyOf(species, a.informed + 1);
+            species[a.informed] = a.species;
+            invSpeed[i] = a.species.invSpeed;
+            radius = Math.max(radius, Math.max(a.species.R_ori, a.species.R_rep));
+            fastest = Math.max(fastest, a.species.speed);
+        }
+        maxRadius = radius;
+        maxSpeed = fastest;
+        workerScratch = ThreadLocal.withInitial(() -> new Scratch(n));
+    }
+
+    public void setNeighborMode(Flock.NeighborMode neighborMode) {
+        this.neighborMode = neighborMode;
+    }
+
+    /** Neighbors per agent in TOPOLOGICAL mode. */
+    public void setNearestNeighbors(int k) {
+        this.nearestK = k;
+    }
+
+    /** Extra list radius in VERLET mode; see VerletList. */
+    public void setVerletSkin(double skin) {
+        this.verlet = new VerletList(skin);
+    }
+
+    public void setUpdateMode(UpdateMode updateMode) {
+        this.updateMode = updateMode;
+    }
+
+    public void setKernel(Kernel kernel) {
+        this.kernel = kernel;
+        if (kernel == Kernel.FAST) {
+            // FAST reads headings as v / speed; spawned agents start with unit velocities
+            for (int i = 0; i < n; i++) {
+                double len = Math.sqrt(vx[i] * vx[i] + vy[i] * vy[i]);
+                if (len != 0) {
+                    vx[i] = vx[i] / len * species[informed[i]].speed;
+                    vy[i] = vy[i] / len * species[informed[i]].speed;
+                }
+            }
+        }
+    }
+
+    /** Neighbor scan of the FAST kernel; defaults to PairKernel.preferred(). */
+    public void setPairKernel(PairKernel pairs) {
+        this.pairs = pairs;
+    }
+
+    /**
+     * Pool used to split SYNCHRONOUS steps; shared between runs so that one
+     * large run can borrow cores that sit idle at the end of a sweep.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void update(double width, double height, SplittableRandom rng) {
+        if (neighborMode == Flock.NeighborMode.GRID) {
+            // cell size covers one step of movement by both agents, see Flock.updateWithGrid
+            grid.rebuild(x, y, n, maxRadius + 2 * maxSpeed, width, height);
+        } else if (neighborMode == Flock.NeighborMode.TOPOLOGICAL) {
+            // neighbors chosen from the start-of-step positions, see Flock.updateTopological
+            tree.rebuild(x, y, n, width, height);
+        } else if (neighborMode == Flock.NeighborMode.VERLET && verlet.needsRebuild(x, y, n, maxSpeed, width, height)) {
+            verlet.rebuild(x, y, n, maxRadius, width, height);
+        }
+
+        if (updateMode == UpdateMode.SYNCHRONOUS) {
+            if (backX == null) {
+                backX = new double[n];
+                backY = new double[n];
+                backVx = new double[n];
+                backVy = new double[n];
+            }
+            if (pool != null && n >= 2 * MIN_CHUNK) {
+                pairEvaluations += pool.invoke(new StepChunk(0, n, width, height));
+            } else {
+                pairEvaluations += updateRange(0, n, scratch, width, height);
+            }
+            double[] t;
+            t = x; x = backX; backX = t;
+            t = y; y = backY; backY = t;
+            t = vx; vx = backVx; backVx = t;
+            t = vy; vy = backVy; backVy = t;
+            return;
+        }
+
+        for (int i = 0; i < n; i++) {
+            int count = gather(i, scratch);
+            if (count >= 0) {
+                updateAgent(i, scratch.candidates, count, scratch.acc, width, height, x, y, vx, vy);
+                pairEvaluations += count;
+            } else {
+                updateAgent(i, null, n, scratch.acc, width, height, x, y, vx, vy);
+                pairEvaluations += n;
+            }
+        }
+    }
+
+    // candidates of agent i into s.candidates; returns their count, or -1 in ALL_PAIRS mode
+    private int gather(int i, Scratch s) {
+        switch (neighborMode) {
+            case GRID:
+                return grid.gather(x[i], y[i], s.candidates);
+            case TOPOLOGICAL:
+                if (s.search == null || s.search.k != nearestK) s.search = new KdTree.Search(nearestK);
+                return tree.gather(x[i], y[i], i, s.search, s.candidates);
+            case VERLET:
+                return verlet.gather(i, s.candidates);
+            default:
+                return -1;
+        }
+    }
+
+    @Override
+    public long pairEvaluations() {
+        return pairEvaluations;
+    }
+
+    @Override
+    public long neighborListBuilds() {
+        return verlet.builds();
+    }
+
+    // synchronous step for agents [lo, hi): read front buffers, write back buffers; returns pair evaluations
+    private long updateRange(int lo, int hi, Scratch s, double width, double height) {
+        long pairs = 0;
+        for (int i = lo; i < hi; i++) {
+            int count = gather(i, s);
+            if (count >= 0) {
+                updateAgent(i, s.candidates, count, s.acc, width, height, backX, backY, backVx, backVy);
+                pairs += count;
+            } else {
+                updateAgent(i, null, n, s.acc, width, height, backX, backY, backVx, backVy);
+                pairs += n;
+            }
+        }
+        return pairs;
+    }
+
+    private class StepChunk extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        private final int lo, hi;
+        private final double width, height;
+
+        StepChunk(int lo, int hi, double width, double height) {
+            this.lo = lo;
+            this.hi = hi;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        protected Long compute() {
+            if (hi - lo <= MIN_CHUNK) {
+                return updateRange(lo, hi, workerScratch.get(), width, height);
+            }
+            int mid = (lo + hi) >>> 1;
+            StepChunk left = new StepChunk(lo, mid, width, height);
+            StepChunk right = new StepChunk(mid, hi, width, height);
+            invokeAll(left, right);
+            return left.join() + right.join();
+        }
+    }
+
+    /**
+     * One agent's step, reading neighbors idx[0..count) (or 0..count when idx is null)
+     * from the front buffers and writing the new heading and position to the out arrays
+     * (the front buffers themselves in SEQUENTIAL mode).
+     */
+    private void updateAgent(int i, int[] idx, int count, double[] acc, double width, double height,
+                             double[] outX, double[] outY, double[] outVx, double[] outVy) {
+        if (kernel == Kernel.FAST) {
+            updateAgentFast(i, idx, count, acc, width, height, outX, outY, outVx, outVy);
+        } else {
+            updateAgentExact(i, idx, count, width, height, outX, outY, outVx, outVy);
+        }
+    }
+
+    // EXACT kernel: the expressions of Agent.update
+    private void updateAgentExact(int i, int[] idx, int count, double width, double height,
+                                  double[] outX, double[] outY, double[] outVx, double[] outVy) {
+        Species sp = species[informed[i]];
+        double px = x[i], py = y[i];
+        double halfW = width / 2.0, halfH = height / 2.0;
+
+        // 1. REPULSION
+        double repX = 0, repY = 0;
+        boolean hasRepulsion = false;
+
+        // 2. SOCIAL ZONE: ORIENTATION + ATTRACTION
+        double oriX = 0, oriY = 0;
+        double attX = 0, attY = 0;
+        int socialCount = 0;
+
+        for (int k = 0; k < count; k++) {
+            int j = idx == null ? k : idx[k];
+
+            double adx = Math.abs(px - x[j]);
+            double ady = Math.abs(py - y[j]);
+            if (adx > halfW) adx = width - adx;
+            if (ady > halfH) ady = height - ady;
+            double d = Math.sqrt(adx * adx + ady * ady);
+
+            if (j != i && d < sp.R_rep) {
+                // unit vector away from neighbor (periodic)
+                double dx = periodic(x[j] - px, width, halfW);
+                double dy = periodic(y[j] - py, height, halfH);
+                double ax = dx * -1, ay = dy * -1;
+                double len = Math.hypot(ax, ay);
+                if (len != 0) {
+                    ax /= len;
+                    ay /= len;
+                }
+                repX += ax;
+                repY += ay;
+                hasRepulsion = true;
+            } else if (d < sp.R_ori) {
+                // attraction: unit vector toward neighbor (skip self)
+                if (j != i) {
+                    double dx = periodic(x[j] - px, width, halfW);
+                    double dy = periodic(y[j] - py, height, halfH);
+                    double len = Math.hypot(dx, dy);
+                    if (len != 0) {
+                        dx /= len;
+                        dy /= len;
+                    }
+                    attX += dx;
+                    attY += dy;
+                }
+
+                // orientation: neighbor heading (unit) - includes self
+                double ox = vx[j], oy = vy[j];
+                double len = Math.hypot(ox, oy);
+                if (len != 0) {
+                    ox /= len;
+                    oy /= len;
+                }
+                oriX += ox;
+                oriY += oy;
+
+                socialCount++;
+            }
+        }
+
+        // 3. SOCIAL DECISION (before preference)
+        double desX, desY;
+        if (hasRepulsion) {
+            double len = Math.hypot(repX, repY);
+            desX = len == 0 ? repX : repX / len;
+            desY = len == 0 ? repY : repY / len;
+        } else if (socialCount > 0) {
+            double len = Math.hypot(attX, attY);
+            if (len != 0) {
+                attX /= len;
+                attY /= len;
+            }
+            len = Math.hypot(oriX, oriY);
+            if (len != 0) {
+                oriX /= len;
+                oriY /= len;
+            }
+            desX = 0 + attX * 1.0;
+            desY = 0 + attY * 1.0;
+            desX += oriX * 1.0;
+            desY += oriY * 1.0;
+            len = Math.hypot(desX, desY);
+            if (len != 0) {
+                desX /= len;
+                desY /= len;
+            }
+        } else {
+            double len = Math.hypot(vx[i], vy[i]);
+            desX = len == 0 ? vx[i] : vx[i] / len;
+            desY = len == 0 ? vy[i] : vy[i] / len;
+        }
+
+        // 4. ADD PREFERENCE (informed individuals only)
+        if (sp.informed) {
+            if (sp.useFeedback) {
+                double angleBetween = angleBetween(vx[i], vy[i], sp.gx, sp.gy);
+                // strengthen w while heading within 10 degrees (0.17 rad) of the target
+                if (Math.abs(angleBetween) < 0.17 && w[i] < sp.w_max) {
+                    w[i] += sp.weight_inc;
+                } else if (w[i] > 0.0) {
+                    w[i] -= sp.weight_dec;
+                }
+            }
+
+            desX += sp.gx * w[i];
+            desY += sp.gy * w[i];
+            double len = Math.hypot(desX, desY);
+            if (len != 0) {
+                desX /= len;
+                desY /= len;
+            }
+        }
+
+        // 5. MAX TURNING RATE
+        double cvx = vx[i], cvy = vy[i];
+        double angleBetween = angleBetween(cvx, cvy, desX, desY);
+        double sign = (cvx * desY - cvy * desX) > 0 ? 1.0 : -1.0;
+        double nvx, nvy;
+        if (Math.abs(angleBetween) > sp.maxTurn) {
+            double ang = sign * sp.maxTurn;
+            double ca = Math.cos(ang), sa = Math.sin(ang);
+            nvx = ca * cvx - sa * cvy;
+            nvy = sa * cvx + ca * cvy;
+        } else {
+            nvx = desX;
+            nvy = desY;
+        }
+
+        double len = Math.hypot(nvx, nvy);
+        if (len != 0) {
+            nvx /= len;
+            nvy /= len;
+        }
+        nvx *= sp.speed;
+        nvy *= sp.speed;
+        outVx[i] = nvx;
+        outVy[i] = nvy;
+
+        // 7. UPDATE POSITION + WRAP
+        double nx = px + nvx;
+        double ny = py + nvy;
+        if (nx < 0) nx += width;
+        if (nx >= width) nx -= width;
+        if (ny < 0) ny += height;
+        if (ny >= height) ny -= height;
+        outX[i] = nx;
+        outY[i] = ny;
+    }
+
+    // FAST kernel: same rules as updateAgentExact, without hypot, acos, cos or sin
+    private void updateAgentFast(int i, int[] idx, int count, double[] acc, double width, double height,
+                                 double[] outX, double[] outY, double[] outVx, double[] outVy) {
+        Species sp = species[informed[i]];
+        double px = x[i], py = y[i];
+        double hx = vx[i] * invSpeed[i], hy = vy[i] * invSpeed[i]; // current heading (unit)
+
+        // 1.-2. ZONE SUMS
+        pairs.accumulate(px, py, sp.rRep2, sp.rOri2, x, y, vx, vy, invSpeed, idx, count, width, height, acc);
+        double repX = acc[PairKernel.REP_X], repY = acc[PairKernel.REP_Y];
+        double attX = acc[PairKernel.ATT_X], attY = acc[PairKernel.ATT_Y];
+        double oriX = acc[PairKernel.ORI_X], oriY = acc[PairKernel.ORI_Y];
+        double repCount = acc[PairKernel.REP_COUNT], socialCount = acc[PairKernel.SOCIAL_COUNT];
+        if (sp.rRep2 > 0) {
+            // the scan counted the agent itself as a repulsion neighbor; it belongs to the social zone
+            repCount--;
+            if (sp.rOri2 > 0) {
+                oriX += hx;
+                oriY += hy;
+                socialCount++;
+            }
+        }
+
+        // 3. SOCIAL DECISION (before preference)
+        double desX, desY, len;
+        if (repCount > 0) {
+            len = Math.sqrt(repX * repX + repY * repY);
+            desX = len == 0 ? repX : repX / len;
+            desY = len == 0 ? repY : repY / len;
+        } else if (socialCount > 0) {
+            len = Math.sqrt(attX * attX + attY * attY);
+            if (len != 0) {
+                attX /= len;
+                attY /= len;
+            }
+            len = Math.sqrt(oriX * oriX + oriY * oriY);
+            if (len != 0) {
+                oriX /= len;
+                oriY /= len;
+            }
+            desX = attX + oriX;
+            desY = attY + oriY;
+            len = Math.sqrt(desX * desX + desY * desY);
+            if (len != 0) {
+                desX /= len;
+                desY /= len;
+            }
+        } else {
+            desX = hx;
+            desY = hy;
+        }
+
+        // 4. ADD PREFERENCE (informed individuals only)
+        if (sp.informed) {
+            if (sp.useFeedback) {
+                if (hx * sp.gx + hy * sp.gy > COS_FEEDBACK && w[i] < sp.w_max) {
+                    w[i] += sp.weight_inc;
+                } else if (w[i] > 0.0) {
+                    w[i] -= sp.weight_dec;
+                }
+            }
+
+            desX += sp.gx * w[i];
+            desY += sp.gy * w[i];
+            len = Math.sqrt(desX * desX + desY * desY);
+            if (len != 0) {
+                desX /= len;
+                desY /= len;
+            }
+        }
+
+        // 5. MAX TURNING RATE: angle > maxTurn  <=>  cos(angle) < cos(maxTurn)
+        double nvx, nvy;
+        if (hx * desX + hy * desY < sp.cosTurn) {
+            double ca = sp.cosTurn;
+            double sa = (hx * desY - hy * desX) > 0 ? sp.sinTurn : -sp.sinTurn;
+            nvx = ca * hx - sa * hy;
+            nvy = sa * hx + ca * hy;
+        } else {
+            nvx = desX;
+            nvy = desY;
+        }
+
+        len = Math.sqrt(nvx * nvx + nvy * nvy);
+        if (len != 0) {
+            nvx /= len;
+            nvy /= len;
+        }
+        nvx *= sp.speed;
+        nvy *= sp.speed;
+        outVx[i] = nvx;
+        outVy[i] = nvy;
+
+        // 7. UPDATE POSITION + WRAP
+        double nx = px + nvx;
+        double ny = py + nvy;
+        if (nx < 0) nx += width;
+        if (nx >= width) nx -= width;
+        if (ny < 0) ny += height;
+        if (ny >= height) ny -= height;
+        outX[i] = nx;
+        outY[i] = ny;
+    }
+
+    // minimal image of a coordinate difference, as Agent.periodicVector
+    private static double periodic(double d, double size, double half) {
+        if (Math.abs(d) > half) d = d > 0 ? d - size : d + size;
+        return d;
+    }
+
+    // angle between two vectors after normalizing both, as Agent.angleBetweenVectors
+    private static double angleBetween(double ax, double ay, double bx, double by) {
+        double la = Math.hypot(ax, ay);
+        if (la != 0) {
+            ax /= la;
+            ay /= la;
+        }
+        double lb = Math.hypot(bx, by);
+        if (lb != 0) {
+            bx /= lb;
+            by /= lb;
+        }
+        double dot = ax * bx + ay * by;
+        if (dot < -1.0) dot = -1.0;
+        if (dot > 1.0) dot = 1.0;
+        return Math.acos(dot);
+    }
+
+    @Override
+    public Agent.Vec2 calculateGroupCentroid(double width, double height) {
+        double sumCosX = 0;
+        double sumSinX = 0;
+        double sumCosY = 0;
+        double sumSinY = 0;
+
+        for (int i = 0; i < n; i++) {
+            double angleX = (x[i] / width) * 2 * Math.PI;
+            double angleY = (y[i] / height) * 2 * Math.PI;
+
+            sumCosX += Math.cos(angleX);
+            sumSinX += Math.sin(angleX);
+            sumCosY += Math.cos(angleY);
+            sumSinY += Math.sin(angleY);
+        }
+
+        double cx = (Math.atan2(sumSinX, sumCosX) / (2 * Math.PI)) * width;
+        double cy = (Math.atan2(sumSinY, sumCosY) / (2 * Math.PI)) * height;
+
+        if (cx < 0) cx += width;
+        if (cx >= width) cx -= width;
+        if (cy < 0) cy += height;
+        if (cy >= height) cy -= height;
+
+        return new Agent.Vec2(cx, cy);
+    }
+
+    @Override
+    public double[] computeBoundingBox(Agent.Vec2 groupDir, Agent.Vec2 groupCentroid, double width, double height) {
+        double minAlong = Double.POSITIVE_INFINITY;
+        double maxAlong = Double.NEGATIVE_INFINITY;
+        double minPerp = Double.POSITIVE_INFINITY;
+        double maxPerp = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < n; i++) {
+            // minimal periodic displacement from the centroid, as Flock.periodicDist
+            double dx = x[i] - groupCentroid.x;
+            double dy = y[i] - groupCentroid.y;
+            if (dx > width / 2.0) dx -= width;
+            if (dx < -width / 2.0) dx += width;
+            if (dy > height / 2.0) dy -= height;
+            if (dy < -height / 2.0) dy += height;
+
+            double along = (dx * groupDir.x + dy * groupDir.y);
+            double perp = (dx * -groupDir.y + dy * groupDir.x);
+
+            if (along < minAlong) minAlong = along;
+            if (along > maxAlong) maxAlong = along;
+            if (perp < minPerp) minPerp = perp;
+            if (perp > maxPerp) maxPerp = perp;
+        }
+
+        return new double[]{maxAlong - minAlong, maxPerp - minPerp};
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public double posX(int i) {
+        return x[i];
+    }
+
+    @Override
+    public double posY(int i) {
+        return y[i];
+    }
+
+    @Override
+    public double velX(int i) {
+        return vx[i];
+    }
+
+    @Override
+    public double velY(int i) {
+        return vy[i];
+    }
+
+    @Override
+    public int informed(int i) {
+        return informed[i];
+    }
+}
@@ -0,0 +1,76 @@
+package sim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Fixed-width binary result file that numpy can memory-map directly.
+ * Layout: magic "CZRES001", int32 record size, int32 field count, then one
+ * 16-byte NUL-padded ASCII name per field, then little-endian records of
+ * eight-byte fields in the CSV column order. Integer columns (run, N, n1,
+ * n2, seed) are int64, the rest float64; see analysis/python/load_results.py.
+ */
+public class BinaryResultWriter {
+
+    public static final byte[] MAGIC = "CZRES001".getBytes(StandardCharsets.US_ASCII);
+    public static final int NAME_BYTES = 16;
+
+    private final FileChannel channel;
+    private final int recordBytes;
+    private ByteBuffer buffer;
+
+    public BinaryResultWriter(Path file, String[] columns) throws IOException {
+        recordBytes = columns.length * 8;
+        buffer = ByteBuffer.allocate(recordBytes * 256).order(ByteOrder.LITTLE_ENDIAN);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(headerBytes(columns.length)).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putInt(recordBytes).putInt(columns.length);
+            for (String c : columns) {
+                byte[] name = c.getBytes(StandardCharsets.US_ASCII);
+                header.put(name, 0, Math.min(name.length, NAME_BYTES));
+                for (int i = name.length; i < NAME_BYTES; i++) header.put((byte) 0);
+            }
+            header.flip();
+            while (header.hasRemaining()) channel.write(header);
+        }
+    }
+
+    public static int headerBytes(int fields) {
+        return 16 + fields * NAME_BYTES;
+    }
+
+    public void write(List<RunRecord> records) throws IOException {
+        if (buffer.capacity() < records.size() * recordBytes) {
+            buffer = ByteBuffer.allocate(records.size() * recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.clear();
+        for (RunRecord r : records) {
+            buffer.putLong(r.run)
+                  .putLong(r.N)
+                  .putDouble(r.p)
+                  .putLong(r.n1)
+                  .putLong(r.n2)
+                  .putDouble(r.angle1Deg)
+                  .putDouble(r.angle2Deg)
+                  .putDouble(r.dirX)
+                  .putDouble(r.dirY)
+                  .putDouble(r.bboxX)
+                  .putDouble(r.bboxY)
+                  .putLong(r.seed);
+            for (double e : r.extras) buffer.putDouble(e);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+}
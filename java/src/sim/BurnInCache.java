@@ -0,0 +1,216 @@
+package sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.json.JSONObject;
+
+/**
+ * Shared burn-in: instead of every run forming its group from the spawn box,
+ * N naive agents are simulated for `steps` steps once per seed family and the
+ * resulting state is reused by every replicate of every cell with that N (and
+ * the same motion parameters). CouzinModel forks a run from the snapshot by
+ * picking its informed agents at random, giving them g1/g2 and jittering all
+ * headings by up to noise_deg, so replicates of a family still differ.
+ *
+ * Run r uses family (r - 1) % families; more families means more independent
+ * starting groups. Snapshots are kept in memory (least recently used evicted
+ * beyond cache_size) and, with a dir, also as files that later sweeps load
+ * instead of recomputing. Concurrent requests for the same snapshot wait for
+ * the one thread computing it.
+ *
+ * Config: "burn_in": {"steps": 500, "families": 8, "noise_deg": 5,
+ *                     "cache_size": 64, "dir": "data/burnin"}
+ */
+public class BurnInCache {
+
+    private static final byte[] MAGIC = "CZBURN01".getBytes(StandardCharsets.US_ASCII);
+
+    /** Agent parameters that do not affect naive agents, so they do not split families. */
+    private static final Set<String> PREFERENCE_PARAMETERS = Set.of("w", "w_max");
+
+    /** Positions and velocities of a burnt-in flock of naive agents. */
+    public static class Snapshot {
+        public final double[] x, y, vx, vy;
+
+        public Snapshot(double[] x, double[] y, double[] vx, double[] vy) {
+            this.x = x;
+            this.y = y;
+            this.vx = vx;
+            this.vy = vy;
+        }
+
+        public static Snapshot of(FlockEngine flock) {
+            int n = flock.size();
+            double[] x = new double[n], y = new double[n], vx = new double[n], vy = new double[n];
+            for (int i = 0; i < n; i++) {
+                x[i] = flock.posX(i);
+                y[i] = flock.posY(i);
+                vx[i] = flock.velX(i);
+                vy[i] = flock.velY(i);
+            }
+            return new Snapshot(x, y, vx, vy);
+        }
+
+        public int size() {
+            return x.length;
+        }
+    }
+
+    private final long baseSeed;
+    private final int steps, families, capacity;
+    private final double noise;
+    private final Path dir; // null = memory only
+
+    private final LinkedHashMap<String, FutureTask<Snapshot>> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FutureTask<Snapshot>> eldest) {
+            return size() > capacity;
+        }
+    };
+
+    private final AtomicLong computed = new AtomicLong(), loaded = new AtomicLong(), reused = new AtomicLong();
+
+    public BurnInCache(long baseSeed, int steps, int families, double noiseDeg, int capacity, Path dir) {
+        if (steps < 0 || families < 1 || capacity < 1) {
+            throw new IllegalArgumentException("burn_in needs steps >= 0, families >= 1 and cache_size >= 1");
+        }
+        this.baseSeed = baseSeed;
+        this.steps = steps;
+        this.families = families;
+        this.noise = Math.toRadians(noiseDeg);
+        this.capacity = capacity;
+        this.dir = dir;
+    }
+
+    /** The cache for the config's "burn_in" object, or null when burn-in is off. */
+    public static BurnInCache fromConfig(JSONObject config, long baseSeed) {
+        JSONObject b = config.optJSONObject("burn_in");
+        if (b == null) return null;
+        String dir = b.optString("dir", null);
+        return new BurnInCache(baseSeed, b.optInt("steps", 500), b.optInt("families", 8),
+                b.optDouble("noise_deg", 5), b.optInt("cache_size", 64), dir == null ? null : Paths.get(dir));
+    }
+
+    /** Let the run fork from its family's snapshot instead of spawning. */
+    public void configure(CouzinModel model, ParameterGrid.Cell cell, int run) {
+        int family = Math.floorMod(run - 1, families);
+        // the family seed leaves out n1, n2, angles and the preference parameters: all cells share it
+        String[] names = new String[cell.extras.length];
+        double[] values = new double[cell.extras.length];
+        int k = 0;
+        for (int i = 0; i < cell.extras.length; i++) {
+            if (PREFERENCE_PARAMETERS.contains(cell.extraNames[i])) continue;
+            names[k] = cell.extraNames[i];
+            values[k++] = cell.extras[i];
+        }
+        long seed = Seeds.burnIn(baseSeed, cell.N, Arrays.copyOf(names, k), Arrays.copyOf(values, k), family);
+        model.setBurnIn(this, seed, steps, noise);
+    }
+
+    /**
+     * The snapshot stored under key: from memory, else from dir, else computed
+     * by burnIn (and written to dir).
+     */
+    public Snapshot get(String key, Supplier<Snapshot> burnIn) {
+        FutureTask<Snapshot> task;
+        boolean owner = false;
+        synchronized (entries) {
+            task = entries.get(key);
+            if (task == null) {
+                task = new FutureTask<>(() -> loadOrCompute(key, burnIn));
+                entries.put(key, task);
+                owner = true;
+            }
+        }
+        if (owner) {
+            task.run();
+        } else {
+            reused.incrementAndGet();
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for burn-in " + key, e);
+        } catch (ExecutionException e) {
+            synchronized (entries) {
+                entries.remove(key, task);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException("burn-in " + key + " failed", cause);
+        }
+    }
+
+    private Snapshot loadOrCompute(String key, Supplier<Snapshot> burnIn) throws IOException {
+        if (dir != null) {
+            try {
+                Snapshot s = read(dir.resolve(key + ".burnin"));
+                loaded.incrementAndGet();
+                return s;
+            } catch (NoSuchFileException e) {
+                // not burnt in yet
+            }
+        }
+        Snapshot s = burnIn.get();
+        computed.incrementAndGet();
+        if (dir != null) write(dir.resolve(key + ".burnin"), s);
+        return s;
+    }
+
+    private static Snapshot read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException(file + " is not a burn-in snapshot");
+            int n = in.readInt();
+            double[][] columns = new double[4][n];
+            for (double[] c : columns) {
+                for (int i = 0; i < n; i++) c[i] = in.readDouble();
+            }
+            return new Snapshot(columns[0], columns[1], columns[2], columns[3]);
+        }
+    }
+
+    // written under a temporary name and moved, so a concurrent sweep never reads half a file
+    private static void write(Path file, Snapshot s) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), "burnin", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.write(MAGIC);
+                out.writeInt(s.size());
+                for (double[] c : new double[][]{s.x, s.y, s.vx, s.vy}) {
+                    for (double v : c) out.writeDouble(v);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String summary() {
+        return "Burn-in snapshots: " + computed.get() + " computed, " + loaded.get() + " loaded from disk, "
+                + reused.get() + " reused from memory";
+    }
+}
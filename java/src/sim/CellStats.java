@@ -0,0 +1,81 @@
+package sim;
+
+/**
+ * Running summary of the replicates of one parameter cell: circular mean and
+ * spread of the group direction (dirX, dirY) and mean/variance of the
+ * bounding box, updated one run at a time.
+ */
+public class CellStats {
+
+    private int n;
+
+    // first and second trigonometric moments of the direction angle
+    private double sumCos, sumSin, sumCos2, sumSin2;
+
+    // Welford accumulators for bbox_X, bbox_Y
+    private double meanX, m2X, meanY, m2Y;
+
+    public void add(double dirX, double dirY, double bboxX, double bboxY) {
+        n++;
+        double theta = Math.atan2(dirY, dirX);
+        sumCos += Math.cos(theta);
+        sumSin += Math.sin(theta);
+        sumCos2 += Math.cos(2 * theta);
+        sumSin2 += Math.sin(2 * theta);
+
+        double dx = bboxX - meanX;
+        meanX += dx / n;
+        m2X += dx * (bboxX - meanX);
+        double dy = bboxY - meanY;
+        meanY += dy / n;
+        m2Y += dy * (bboxY - meanY);
+    }
+
+    public int count() {
+        return n;
+    }
+
+    /** Circular mean direction in radians. */
+    public double meanDirection() {
+        return Math.atan2(sumSin, sumCos);
+    }
+
+    /** Mean resultant length R in [0, 1]: 1 = all runs agree, near 0 = spread out or bimodal. */
+    public double resultantLength() {
+        return n == 0 ? 0 : Math.hypot(sumCos, sumSin) / n;
+    }
+
+    /** Circular variance 1 - R. */
+    public double circularVariance() {
+        return 1 - resultantLength();
+    }
+
+    /**
+     * Half-width (radians) of the confidence interval of the mean direction for
+     * normal quantile z, from the circular standard error
+     * sqrt((1 - rho2) / (2 n R^2)) (Fisher 1993). Infinite while undefined.
+     */
+    public double directionHalfWidth(double z) {
+        double r = resultantLength();
+        if (n < 2 || r == 0) return Double.POSITIVE_INFINITY;
+        double mean = meanDirection();
+        double rho2 = (sumCos2 * Math.cos(2 * mean) + sumSin2 * Math.sin(2 * mean)) / n;
+        double se = Math.sqrt(Math.max(0, 1 - rho2) / (2 * n * r * r));
+        return z * se;
+    }
+
+    public double bboxMeanX() {
+        return meanX;
+    }
+
+    public double bboxMeanY() {
+        return meanY;
+    }
+
+    /** Half-width of the confidence interval of the larger of the two mean bbox sides. */
+    public double bboxHalfWidth(double z) {
+        if (n < 2) return Double.POSITIVE_INFINITY;
+        double var = Math.max(m2X, m2Y) / (n - 1);
+        return z * Math.sqrt(var / n);
+    }
+}
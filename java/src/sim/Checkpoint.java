@@ -0,0 +1,147 @@
+package sim;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resume support for long sweeps. ResultWriter appends the committed sizes
+ * of its output files to a small journal (output.csv.journal) after every
+ * batch. On restart the outputs are cut back to the last committed sizes,
+ * which drops any half-written rows, and the (N, p, n1, n2, angle1, angle2,
+ * run) tuples that remain are indexed so only missing runs are scheduled.
+ */
+public class Checkpoint {
+
+    private final Path csv;
+    private final Path binary;
+    private final Path journal;
+
+    public Checkpoint(String csvPath) {
+        this.csv = Paths.get(csvPath);
+        this.binary = Paths.get(ResultWriter.binaryPath(csvPath));
+        this.journal = Paths.get(csvPath + ".journal");
+    }
+
+    /** Record that both outputs are complete up to their current sizes. */
+    public void commit() throws IOException {
+        String line = size(csv) + " " + size(binary) + "\n";
+        Files.write(journal, line.getBytes(StandardCharsets.US_ASCII),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Truncate the outputs to the last commit and return the runs they contain,
+     * keyed by RunRecord.key, with their outcome {dirX, dirY, bbox_X, bbox_Y}.
+     */
+    public Map<String, double[]> recover() throws IOException {
+        long csvCommitted = -1, binCommitted = -1;
+        if (Files.exists(journal)) {
+            List<String> lines = Files.readAllLines(journal, StandardCharsets.US_ASCII);
+            // the last line may itself be torn; take the last complete one
+            for (int i = lines.size() - 1; i >= 0 && csvCommitted < 0; i--) {
+                String[] parts = lines.get(i).trim().split(" ");
+                if (parts.length == 2) {
+                    try {
+                        csvCommitted = Long.parseLong(parts[0]);
+                        binCommitted = Long.parseLong(parts[1]);
+                    } catch (NumberFormatException e) {
+                        csvCommitted = -1;
+                    }
+                }
+            }
+        }
+
+        // without a journal (older outputs) keep every complete line of the CSV
+        if (csvCommitted < 0) {
+            csvCommitted = lastCompleteLine(csv);
+            long bin = size(binary);
+            int[] layout = binaryLayout(binary);
+            binCommitted = layout == null ? 0 : bin - (bin - layout[0]) % layout[1];
+        }
+        truncate(csv, csvCommitted);
+        truncate(binary, Math.max(binCommitted, 0));
+
+        // compact the journal to the state we resume from
+        Files.deleteIfExists(journal);
+        commit();
+
+        Map<String, double[]> done = new HashMap<>();
+        if (size(csv) > 0) {
+            for (String line : Files.readAllLines(csv)) {
+                String[] f = line.split(",");
+                // 11 columns in outputs written before the seed column existed
+                // swept agent parameters, if any, follow the seed column
+                if (f.length >= 11 && !f[0].equals("run")) {
+                    StringBuilder key = new StringBuilder(String.join(",", f[1], f[2], f[3], f[4], f[5], f[6]));
+                    for (int i = 12; i < f.length; i++) key.append(',').append(f[i]);
+                    done.put(key.append(',').append(f[0]).toString(), new double[]{
+                            Double.parseDouble(f[7]), Double.parseDouble(f[8]),
+                            Double.parseDouble(f[9]), Double.parseDouble(f[10])});
+                }
+            }
+        } else if (binaryLayout(binary) != null) {
+            int[] layout = binaryLayout(binary);
+            int extras = layout[1] / 8 - 12;
+            try (FileChannel ch = FileChannel.open(binary, StandardOpenOption.READ)) {
+                ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+                for (int pos = layout[0]; pos + layout[1] <= buf.limit(); pos += layout[1]) {
+                    double[] e = new double[extras];
+                    for (int i = 0; i < extras; i++) e[i] = buf.getDouble(pos + 96 + 8 * i);
+                    done.put(RunRecord.key((int) buf.getLong(pos), (int) buf.getLong(pos + 8), buf.getDouble(pos + 16),
+                            (int) buf.getLong(pos + 24), (int) buf.getLong(pos + 32),
+                            buf.getDouble(pos + 40), buf.getDouble(pos + 48), e), new double[]{
+                            buf.getDouble(pos + 56), buf.getDouble(pos + 64),
+                            buf.getDouble(pos + 72), buf.getDouble(pos + 80)});
+                }
+            }
+        }
+        return done;
+    }
+
+    // {header bytes, record bytes} of a binary result file, or null if it has no complete header
+    private static int[] binaryLayout(Path p) throws IOException {
+        if (size(p) < 16) return null;
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            while (head.hasRemaining() && ch.read(head) >= 0) { }
+            int recordBytes = head.getInt(8);
+            int headerBytes = BinaryResultWriter.headerBytes(head.getInt(12));
+            return ch.size() < headerBytes ? null : new int[]{headerBytes, recordBytes};
+        }
+    }
+
+    private static long size(Path p) throws IOException {
+        return Files.exists(p) ? Files.size(p) : 0;
+    }
+
+    // byte offset just past the last '\n' in the file
+    private static long lastCompleteLine(Path p) throws IOException {
+        if (!Files.exists(p)) return 0;
+        try (RandomAccessFile f = new RandomAccessFile(p.toFile(), "r")) {
+            for (long pos = f.length() - 1; pos >= 0; pos--) {
+                f.seek(pos);
+                if (f.read() == '\n') return pos + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static void truncate(Path p, long length) throws IOException {
+        if (Files.exists(p) && Files.size(p) > length) {
+            try (FileChannel ch = FileChannel.open(p, StandardOpenOption.WRITE)) {
+                ch.truncate(length);
+            }
+        }
+    }
+}
@@ -1,6 +1,15 @@
 package sim;
 
-import java.util.Random;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 
 public class CouzinModel {
 
@@ -15,7 +24,21 @@ public class CouzinModel {
         }
     }
 
-    private Flock flock;
+    /** Which flock implementation advances the agents. */
+    public enum Engine {
+        OBJECT, // Flock of Agent objects (reference)
+        ARRAYS, // ArrayFlock: primitive arrays, allocation-free steps
+        FLOAT   // FloatFlock: the FAST kernel on float state (sequential)
+    }
+
+    /**
+     * Version of the model's dynamics in result-cache keys (see ResultCache):
+     * bump it with any change that alters the result of a run with the same
+     * parameters and seed, so cached results of the old model are not reused.
+     */
+    public static final int VERSION = 2;
+
+    private FlockEngine flock;
 
     // Parameters
     private int N = 100;        // total number of agents
@@ -37,76 +60,372 @@ public class CouzinModel {
     private Agent.Vec2 groupDirection;
     private double[] boundingBox; 
 
-    private int timeToMeasure = 250;
-    private boolean useFeedback = false;
-
-
-    private final Random rng = new Random(); // for noise and randomness
+    /** Steps between the two centroids that give the group direction; run_time must exceed it. */
+    public static final int MEASURE_STEPS = 250;
 
-    public CouzinModel(int N, int n1, int n2, double angle1, double angle2, int runTime, Random rng, boolean useFeedback) {
+    private int timeToMeasure = MEASURE_STEPS;
+    private boolean useFeedback = false;
+    private Flock.NeighborMode neighborMode = Flock.NeighborMode.ALL_PAIRS;
+    private int nearestK = 7; // TOPOLOGICAL
+    private double verletSkin = VerletList.DEFAULT_SKIN; // VERLET
+    private Engine engine = Engine.OBJECT;
+    private ArrayFlock.UpdateMode updateMode = ArrayFlock.UpdateMode.SEQUENTIAL;
+    private ArrayFlock.Kernel kernel = ArrayFlock.Kernel.EXACT;
+    private ForkJoinPool stepPool; // splits synchronous steps, null = single-threaded
+    private final Map<String, Double> agentParameters = new LinkedHashMap<>(); // overrides for every species
+    // the run's species by type: 0 naive (the rest of N), 1 toward g1 (n1), 2 toward g2 (n2), 3+ extra
+    private final List<Species> species = new ArrayList<>();
+    private final List<Integer> extraCounts = new ArrayList<>(); // agents of types 3+
+    private boolean customSpecies; // the table differs from the default, so it goes into the keys
+
+    private SweepMetrics metrics; // null = not instrumented
+    private static final int METRICS_EVERY = 100; // steps between reports to metrics
+
+    // optional trajectory output (null = off)
+    private Path trajectoryFile;
+    private int trajectoryEvery;
+    private int trajectoryMaxAgents;
+
+    // optional order-parameter time series (null = off)
+    private Path observablesFile;
+    private int observablesEvery;
+    private double alignDeg;
+
+    // optional live view for a viewer in another process (null = off)
+    private Path liveViewFile;
+    private int liveViewEvery;
+    private int liveViewMaxAgents;
+    private int liveViewSlots;
+
+    private final List<StepObserver> observers = new ArrayList<>(); // added with addObserver
+
+    // optional shared burn-in (null = spawn in the initial box)
+    private BurnInCache burnIn;
+    private long burnInSeed;
+    private int burnInSteps;
+    private double burnInNoise;
+
+
+    private final long seed;
+    private final SplittableRandom rng; // all randomness of this run (spawn, headings, noise)
+
+    public CouzinModel(int N, int n1, int n2, double angle1, double angle2, int runTime, long seed, boolean useFeedback) {
         
+        if (runTime <= timeToMeasure) {
+            throw new IllegalArgumentException("run_time must exceed the " + timeToMeasure +
+                    " steps over which the group direction is measured: " + runTime);
+        }
+        this.seed = seed;
+        this.rng = new SplittableRandom(seed);
 
         this.N = N;
         this.n1 = n1;
         this.n2 = n2;
         this.angle1 = angle1;
         this.angle2 = angle2;
+        this.runTime = runTime;
 
         this.g1 = Agent.Vec2.fromAngle(angle1).normalize();
         this.g2 = Agent.Vec2.fromAngle(angle2).normalize();
         this.useFeedback = useFeedback;
-        
+        species.add(Species.naive("naive", useFeedback));
+        species.add(Species.informed("g1", g1, useFeedback));
+        species.add(Species.informed("g2", g2, useFeedback));
     }
 
     /** Runs one full simulation and returns the resulting group direction */
     public SimulationResult runSimulation() {
-        flock = new Flock(); // create new flock
+        SweepMetrics.RunEvent event = new SweepMetrics.RunEvent();
+        event.begin();
+        long start = System.nanoTime();
 
-        // Spawn agents
-        for (int i = 0; i < N; i++) {
-            int informed = 0;
-            Agent.Vec2 g = new Agent.Vec2(0, 0);
-
-            if (i < n1) {
-                informed = 1;
-                g = g1.copy();
-            } else if (i < n1 + n2) {
-                informed = 2;
-                g = g2.copy();
+        flock = engineFor(spawn());
+
+        List<StepObserver> active = new ArrayList<>(observers);
+        try {
+            if (trajectoryFile != null) {
+                active.add(new TrajectoryRecorder(trajectoryFile, flock, runTime, trajectoryEvery,
+                        trajectoryMaxAgents, seed, width, height));
+            }
+            if (observablesFile != null) {
+                active.add(new ObservableSeries(observablesFile, runTime, observablesEvery, alignDeg,
+                        g1, g2, seed, width, height));
+            }
+            if (liveViewFile != null) {
+                // null while another run of this JVM is on view
+                StepObserver live = LiveView.open(liveViewFile, liveViewMaxAgents, liveViewSlots, width, height)
+                        .attach(flock, runTime, liveViewEvery, seed);
+                if (live != null) active.add(live);
+            }
+            for (StepObserver o : active) o.observe(0, flock);
+
+            // Iterate simulation
+            long reportedPairs = 0, reportedBuilds = 0;
+            for (int t = 0; t < runTime; t++) {
+
+                if (t == runTime - timeToMeasure - 1) {
+                    centroid1 = flock.calculateGroupCentroid(width, height);
+                }
+                if (t == runTime - 1) {
+                    centroid2 = flock.calculateGroupCentroid(width, height);
+                }
+
+                flock.update(width, height, rng);
+
+                if (metrics != null && ((t + 1) % METRICS_EVERY == 0 || t == runTime - 1)) {
+                    int steps = (t + 1) % METRICS_EVERY == 0 ? METRICS_EVERY : (t + 1) % METRICS_EVERY;
+                    long pairs = flock.pairEvaluations();
+                    metrics.stepsDone((long) steps * N, pairs - reportedPairs);
+                    reportedPairs = pairs;
+                    if (neighborMode == Flock.NeighborMode.VERLET) {
+                        long builds = flock.neighborListBuilds();
+                        metrics.neighborListsBuilt(steps, builds - reportedBuilds);
+                        reportedBuilds = builds;
+                    }
+                }
+
+                for (StepObserver o : active) {
+                    if ((t + 1) % o.every() == 0) o.observe(t + 1, flock);
+                }
             }
 
+            for (StepObserver o : active) o.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        groupDirection = computeGroupDirection(centroid1, centroid2);
+        boundingBox = flock.computeBoundingBox(groupDirection, centroid2, width, height);
+
+        if (metrics != null) metrics.runFinished(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.N = N;
+            event.n1 = n1;
+            event.n2 = n2;
+            event.seed = seed;
+            event.steps = runTime;
+            event.pairEvaluations = flock.pairEvaluations();
+            event.neighborListBuilds = flock.neighborListBuilds();
+            event.commit();
+        }
+        return new SimulationResult(groupDirection, boundingBox);
+    }
+
+    /**
+     * Run replicates of one cell together on an EnsembleFlock and return their
+     * results in order. The models must differ only in their seed. Every
+     * replicate gets the result a FAST-kernel run (sequential, all pairs,
+     * scalar pair scan) of its own model would give; observers, trajectories
+     * and the other engine settings of the models are not used.
+     */
+    public static List<SimulationResult> runEnsemble(List<CouzinModel> models, SweepMetrics metrics) {
+        List<Flock> flocks = new ArrayList<>();
+        for (CouzinModel model : models) flocks.add(model.spawn());
+        return runEnsemble(models, flocks, metrics);
+    }
+
+    private static List<SimulationResult> runEnsemble(List<CouzinModel> models, List<Flock> flocks, SweepMetrics metrics) {
+        if (!EnsembleFlock.canStep(flocks)) {
+            // forks that give agent i a different speed or zones per replicate: step them one by one
+            List<SimulationResult> results = new ArrayList<>();
+            for (int r = 0; r < models.size(); r++) {
+                results.addAll(runEnsemble(models.subList(r, r + 1), flocks.subList(r, r + 1), metrics));
+            }
+            return results;
+        }
+        long start = System.nanoTime();
+        CouzinModel m = models.get(0);
+        int R = models.size();
+        EnsembleFlock ensemble = new EnsembleFlock(flocks);
+
+        Agent.Vec2[] c1 = new Agent.Vec2[R], c2 = new Agent.Vec2[R];
+        for (int t = 0; t < m.runTime; t++) {
+            if (t == m.runTime - m.timeToMeasure - 1) {
+                for (int r = 0; r < R; r++) c1[r] = ensemble.calculateGroupCentroid(r, m.width, m.height);
+            }
+            if (t == m.runTime - 1) {
+                for (int r = 0; r < R; r++) c2[r] = ensemble.calculateGroupCentroid(r, m.width, m.height);
+            }
+
+            ensemble.update(m.width, m.height);
+
+            if (metrics != null && ((t + 1) % METRICS_EVERY == 0 || t == m.runTime - 1)) {
+                long steps = (t + 1) % METRICS_EVERY == 0 ? METRICS_EVERY : (t + 1) % METRICS_EVERY;
+                metrics.stepsDone(steps * R * m.N, steps * R * m.N * m.N);
+            }
+        }
+
+        List<SimulationResult> results = new ArrayList<>();
+        for (int r = 0; r < R; r++) {
+            CouzinModel model = models.get(r);
+            model.groupDirection = model.computeGroupDirection(c1[r], c2[r]);
+            model.boundingBox = ensemble.computeBoundingBox(r, model.groupDirection, c2[r], m.width, m.height);
+            results.add(new SimulationResult(model.groupDirection, model.boundingBox));
+        }
+        // the wall time is shared; the histogram gets each replicate's share
+        if (metrics != null) {
+            for (int r = 0; r < R; r++) metrics.runFinished((System.nanoTime() - start) / R);
+        }
+        return results;
+    }
+
+    // the engine the settings select, stepping the given agents
+    private FlockEngine engineFor(Flock agents) {
+        if (engine == Engine.FLOAT) {
+            if (updateMode == ArrayFlock.UpdateMode.SYNCHRONOUS) {
+                throw new IllegalArgumentException("the float engine only steps sequentially");
+            }
+            FloatFlock floats = new FloatFlock(agents.getAgents());
+            floats.setNeighborMode(neighborMode);
+            floats.setNearestNeighbors(nearestK);
+            floats.setVerletSkin(verletSkin);
+            return floats;
+        }
+        // synchronous updates and the FAST kernel are only implemented by the array engine
+        if (engine == Engine.ARRAYS || updateMode == ArrayFlock.UpdateMode.SYNCHRONOUS
+                || kernel == ArrayFlock.Kernel.FAST) {
+            ArrayFlock arrays = new ArrayFlock(agents.getAgents());
+            arrays.setNeighborMode(neighborMode);
+            arrays.setNearestNeighbors(nearestK);
+            arrays.setVerletSkin(verletSkin);
+            arrays.setUpdateMode(updateMode);
+            arrays.setKernel(kernel);
+            arrays.setPool(stepPool);
+            return arrays;
+        }
+        return agents;
+    }
+
+    // create the flock of this run from its rng (the same agents whatever engine steps them)
+    private Flock spawn() {
+        if (burnIn != null) return fork();
+        return spawn(counts(), rng);
+    }
+
+    // N agents in the initial box: types 1, 2, 3, ... in order with counts[type] agents each, then naive ones
+    private Flock spawn(int[] counts, SplittableRandom rng) {
+        Flock agents = new Flock(); // create new flock
+        agents.setNeighborMode(neighborMode);
+        agents.setNearestNeighbors(nearestK);
+        agents.setVerletSkin(verletSkin);
+        Species[] table = table();
+        int[] types = typeOrder(counts);
+
+        // Spawn agents
+        for (int i = 0; i < N; i++) {
             // Random position in initial box
-            double x = randInRange(width / 2 - initialBoxSize / 2,
+            double x = randInRange(rng, width / 2 - initialBoxSize / 2,
                                    width / 2 + initialBoxSize / 2);
-            double y = randInRange(height / 2 - initialBoxSize / 2,
+            double y = randInRange(rng, height / 2 - initialBoxSize / 2,
                                    height / 2 + initialBoxSize / 2);
 
-            Agent a = new Agent(x, y, informed, g, useFeedback);
-            flock.add(a);
+            agents.add(new Agent(x, y, types[i], table[types[i]], rng));
         }
+        return agents;
+    }
 
-        // Iterate simulation
-        for (int t = 0; t < runTime; t++) {
+    // what the burn-in snapshot depends on besides its family and length: its numerics and naive parameters
+    private String burnInNumerics() {
+        // the burn-in flock is all naive: its dynamics are those of the naive type after any overrides
+        // (hashed, since the key also names the snapshot file)
+        return (engine == Engine.FLOAT ? engine : kernel) + "_" + updateMode + "_" + neighbors() + "_"
+                + ResultCache.sha256(table()[0].key()).substring(0, 16);
+    }
 
-            if (t == runTime - timeToMeasure - 1) {
-                centroid1 = flock.calculateGroupCentroid(width, height);
-            }
-            if (t == runTime - 1) {
-                centroid2 = flock.calculateGroupCentroid(width, height);
-            }
+    // this run's flock from its family's burnt-in snapshot (see BurnInCache)
+    private Flock fork() {
+        String key = Long.toHexString(burnInSeed) + "_" + burnInSteps + "_" + burnInNumerics();
+        BurnInCache.Snapshot s = burnIn.get(key, this::burnIn);
+
+        // informed agents: N - counts[0] burnt-in agents drawn at random, typed in spawn order
+        int[] ranks = typeOrder(counts());
+        int informed = N - counts()[0];
+        int[] order = new int[N];
+        for (int i = 0; i < N; i++) order[i] = i;
+        int[] type = new int[N];
+        for (int k = 0; k < informed; k++) {
+            int j = k + rng.nextInt(N - k);
+            int tmp = order[k];
+            order[k] = order[j];
+            order[j] = tmp;
+            type[order[k]] = ranks[k];
+        }
 
-            flock.update(width, height, rng);
+        Flock agents = new Flock();
+        agents.setNeighborMode(neighborMode);
+        agents.setNearestNeighbors(nearestK);
+        agents.setVerletSkin(verletSkin);
+        Species[] table = table();
+        for (int i = 0; i < N; i++) {
+            Agent a = new Agent(s.x[i], s.y[i], type[i], table[type[i]], rng);
+            // burnt-in heading, jittered per replicate
+            double angle = Math.atan2(s.vy[i], s.vx[i]) + (2 * rng.nextDouble() - 1) * burnInNoise;
+            double len = Math.sqrt(s.vx[i] * s.vx[i] + s.vy[i] * s.vy[i]);
+            a.vel = new Agent.Vec2(Math.cos(angle) * len, Math.sin(angle) * len);
+            agents.add(a);
         }
+        return agents;
+    }
 
-        groupDirection = computeGroupDirection(centroid1, centroid2);
-        boundingBox = flock.computeBoundingBox(groupDirection, centroid2, width, height);
-        return new SimulationResult(groupDirection, boundingBox);
+    // burnInSteps steps of N naive agents from the family's seed, on this run's engine settings
+    private BurnInCache.Snapshot burnIn() {
+        SplittableRandom familyRng = new SplittableRandom(burnInSeed);
+        FlockEngine f = engineFor(spawn(new int[]{N}, familyRng));
+        for (int t = 0; t < burnInSteps; t++) {
+            f.update(width, height, familyRng);
+        }
+        return BurnInCache.Snapshot.of(f);
     }
 
     // --- Utility methods ---
 
+    // the species with the run's agent parameter overrides; topological agents orient to and attract every chosen neighbor
+    private Species[] table() {
+        Species[] table = new Species[species.size()];
+        for (int t = 0; t < table.length; t++) {
+            Species sp = species.get(t);
+            for (Map.Entry<String, Double> e : agentParameters.entrySet()) {
+                sp = sp.with(e.getKey(), e.getValue());
+            }
+            if (neighborMode == Flock.NeighborMode.TOPOLOGICAL) sp = sp.with("R_ori", Double.POSITIVE_INFINITY);
+            table[t] = sp;
+        }
+        return table;
+    }
+
+    // agents per type
+    private int[] counts() {
+        int[] counts = new int[species.size()];
+        counts[1] = n1;
+        counts[2] = n2;
+        for (int t = 3; t < counts.length; t++) counts[t] = extraCounts.get(t - 3);
+        int informed = 0;
+        for (int t = 1; t < counts.length; t++) informed += counts[t];
+        if (informed > N) throw new IllegalArgumentException(informed + " informed agents of " + N);
+        counts[0] = N - informed;
+        return counts;
+    }
+
+    // the type of each agent in spawn order: types 1, 2, 3, ... then naive
+    private static int[] typeOrder(int[] counts) {
+        int n = 0;
+        for (int c : counts) n += c;
+        int[] types = new int[n];
+        int i = 0;
+        for (int t = 1; t < counts.length; t++) {
+            for (int k = 0; k < counts[t]; k++) types[i++] = t;
+        }
+        return types; // the rest stay 0
+    }
+
+    // neighbor selection as it enters the cache keys
+    private String neighbors() {
+        return neighborMode == Flock.NeighborMode.TOPOLOGICAL ? neighborMode + "(k=" + nearestK + ")" : neighborMode.toString();
+    }
+
     // random double in [a, b)
-    private double randInRange(double a, double b) {
+    private static double randInRange(SplittableRandom rng, double a, double b) {
         return a + rng.nextDouble() * (b - a);
     }
 
@@ -128,6 +447,170 @@ public class CouzinModel {
         return new Agent.Vec2(dx, dy);
     }
 
+    public void setNeighborMode(Flock.NeighborMode neighborMode) {
+        this.neighborMode = neighborMode;
+    }
+
+    /**
+     * Interact with the k nearest neighbors instead of everyone within R_ori:
+     * repulsion still acts within R_rep, orientation and attraction on the
+     * other chosen neighbors at any distance (see Flock.updateTopological).
+     */
+    public void setTopological(int k) {
+        if (k < 1) throw new IllegalArgumentException("topological interaction needs k >= 1: " + k);
+        this.neighborMode = Flock.NeighborMode.TOPOLOGICAL;
+        this.nearestK = k;
+    }
+
+    /** Extra radius of the VERLET neighbor lists; larger skins rebuild less often but scan more pairs. */
+    public void setVerletSkin(double skin) {
+        this.verletSkin = skin;
+    }
+
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    public void setUpdateMode(ArrayFlock.UpdateMode updateMode) {
+        this.updateMode = updateMode;
+    }
+
+    public void setKernel(ArrayFlock.Kernel kernel) {
+        this.kernel = kernel;
+    }
+
+    /** Report steps, pair evaluations and wall time of this run to the sweep's metrics. */
+    public void setMetrics(SweepMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setStepPool(ForkJoinPool stepPool) {
+        this.stepPool = stepPool;
+    }
+
+    /**
+     * Override a Species parameter (speed, maxTurn, R_rep, R_ori, w, w_max, ...) for every agent of the run.
+     */
+    public void setAgentParameter(String name, double value) {
+        Species.naive("check", false).with(name, value); // unknown names fail here, not at spawn
+        agentParameters.put(name, value);
+    }
+
+    /** Species of the given type (0 naive, 1 toward g1, 2 toward g2, 3+ added), before agent parameter overrides. */
+    public Species getSpecies(int type) {
+        return species.get(type);
+    }
+
+    /** Replace the species of an existing type; types 1 and 2 keep their n1 and n2 agents. */
+    public void setSpecies(int type, Species s) {
+        species.set(type, s);
+        customSpecies = true;
+    }
+
+    /** Add a species of count agents as the next type (3, 4, ...), taken from the naive ones. */
+    public void addSpecies(Species s, int count) {
+        species.add(s);
+        extraCounts.add(count);
+        customSpecies = true;
+    }
+
+    /**
+     * Record positions and headings to file every `every` steps (see TrajectoryRecorder).
+     * @param maxAgents record at most this many agents, evenly spaced (0 = all)
+     */
+    public void setTrajectory(Path file, int every, int maxAgents) {
+        this.trajectoryFile = file;
+        this.trajectoryEvery = every;
+        this.trajectoryMaxAgents = maxAgents;
+    }
+
+    /**
+     * Record order parameters (polarization, milling, cohesion, nearest-neighbor
+     * distance, alignment with g1/g2) every `every` steps; see ObservableSeries.
+     * @param alignDeg heading tolerance for counting an informed agent as aligned
+     */
+    public void setObservables(Path file, int every, double alignDeg) {
+        this.observablesFile = file;
+        this.observablesEvery = every;
+        this.alignDeg = alignDeg;
+    }
+
+    /**
+     * Publish agent state every `every` steps into a memory-mapped ring that a
+     * viewer polls (see LiveView); runs sharing the file take turns.
+     * @param maxAgents agents per frame, evenly spaced over larger flocks
+     * @param slots     frames in the ring
+     */
+    public void setLiveView(Path file, int every, int maxAgents, int slots) {
+        this.liveViewFile = file;
+        this.liveViewEvery = every;
+        this.liveViewMaxAgents = maxAgents;
+        this.liveViewSlots = slots;
+    }
+
+    /**
+     * Start from the burnt-in state of the seed family instead of the spawn box;
+     * set by BurnInCache.configure.
+     * @param noise largest heading jitter per agent at the fork, in radians
+     */
+    public void setBurnIn(BurnInCache cache, long familySeed, int steps, double noise) {
+        this.burnIn = cache;
+        this.burnInSeed = familySeed;
+        this.burnInSteps = steps;
+        this.burnInNoise = noise;
+    }
+
+    /** Show the flock to a custom observer after spawning and every observer.every() steps. */
+    public void addObserver(StepObserver observer) {
+        observers.add(observer);
+    }
+
+    /**
+     * Everything that determines the result of this run, as one canonical line:
+     * model version, parameters, engine numerics and seed. Two models with the
+     * same key give bit-identical results; ResultCache stores results under its
+     * hash.
+     * @param ensemble the run is stepped by CouzinModel.runEnsemble, whose
+     *                 numerics are those of the FAST kernel with ScalarPairKernel
+     */
+    public String parameterKey(boolean ensemble) {
+        StringBuilder sb = new StringBuilder("v").append(VERSION)
+                .append(" N=").append(N).append(" n1=").append(n1).append(" n2=").append(n2)
+                .append(" angle1=").append(angle1).append(" angle2=").append(angle2)
+                .append(" runTime=").append(runTime).append(" feedback=").append(useFeedback)
+                .append(" box=").append(width).append('x').append(height).append('/').append(initialBoxSize)
+                .append(" measure=").append(timeToMeasure);
+        new TreeMap<>(agentParameters).forEach((k, v) -> sb.append(' ').append(k).append('=').append(v));
+        if (customSpecies) {
+            int[] counts = counts();
+            for (int t = 0; t < species.size(); t++) {
+                sb.append(" species").append(t).append('=').append(counts[t]).append('x').append(species.get(t).key());
+            }
+        }
+        if (ensemble) {
+            sb.append(" numerics=FAST/ScalarPairKernel/SEQUENTIAL/ALL_PAIRS");
+        } else if (engine == Engine.FLOAT) {
+            sb.append(" numerics=FLOAT/").append(FloatPairKernel.preferred().getClass().getSimpleName())
+              .append('/').append(updateMode).append('/').append(neighbors());
+        } else if (kernel == ArrayFlock.Kernel.FAST) {
+            sb.append(" numerics=FAST/").append(PairKernel.preferred().getClass().getSimpleName())
+              .append('/').append(updateMode).append('/').append(neighbors());
+        } else {
+            sb.append(" numerics=EXACT/").append(engine).append('/').append(updateMode).append('/').append(neighbors());
+        }
+        if (burnIn != null) {
+            sb.append(" burnIn=").append(Long.toHexString(burnInSeed)).append('/').append(burnInSteps)
+              .append('/').append(burnInNoise);
+            // an ensemble forks from a snapshot stepped with the model's own numerics, not the ensemble's
+            if (ensemble) sb.append('/').append(burnInNumerics());
+        }
+        return sb.append(" seed=").append(seed).toString();
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
     public Agent.Vec2 getGroupDirection() {
         return groupDirection;
     }
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.List;
 
 public class CsvWriter {
 
@@ -18,17 +19,17 @@ public class CsvWriter {
         writer = new PrintWriter(new FileWriter(file, true));
     }
 
-    public void writeHeader(String... headers) {
+    public void writeHeader(String... headers) throws IOException {
         synchronized (lock) {
             if (!headerWritten) {
                 writer.println(String.join(",", headers));
                 headerWritten = true;
-                writer.flush();
+                flush();
             }
         }
     }
 
-    public void writeRow(Object... values) {
+    public void writeRow(Object... values) throws IOException {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < values.length; i++) {
             sb.append(values[i].toString());
@@ -36,10 +37,25 @@ public class CsvWriter {
         }
         synchronized (lock) {
             writer.println(sb.toString());
-            writer.flush();
+            flush();
         }
     }
 
+    /** Write several preformatted lines with a single flush. */
+    public void writeLines(List<String> lines) throws IOException {
+        synchronized (lock) {
+            for (String line : lines) {
+                writer.println(line);
+            }
+            flush();
+        }
+    }
+
+    // PrintWriter swallows IOExceptions; a failed write must not be checkpointed as written
+    private void flush() throws IOException {
+        if (writer.checkError()) throw new IOException("writing the CSV failed");
+    }
+
     public void close() {
         writer.close();
     }
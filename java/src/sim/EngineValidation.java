@@ -0,0 +1,235 @@
+package sim;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * Checks ArrayFlock's FAST kernel and FloatFlock against the reference Agent.update.
+ *
+ * Step check: flocks are evolved with Agent.update, then one more step is
+ * taken from the same state by Agent.update and by the FAST kernel (scalar and
+ * preferred PairKernel); reported is the largest position and heading
+ * difference. These should be at the level of rounding (around 1e-12).
+ *
+ * Ensemble check: the dynamics are chaotic, so whole runs diverge after a few
+ * hundred steps whatever the arithmetic. Instead the outcomes of many runs of
+ * one cell are compared: mean group direction, resultant length and bounding
+ * box per kernel, with 95% intervals.
+ *
+ * FloatFlock rounds its state to float, so its step check differs at the
+ * level of float rounding (around 1e-4 in position and heading).
+ *
+ * Float check (--float): every run of a config's grid is simulated twice from
+ * the same seed, by FloatFlock and by the FAST kernel in double, and per cell
+ * the paired differences in group direction and bounding box are reported
+ * next to the difference of the two ensembles' means, which should lie within
+ * its 95% interval.
+ *
+ * Usage: java -cp out:lib/* sim.EngineValidation [runs] [run_time]
+ *        java -cp out:lib/* sim.EngineValidation --float config.json [runs per cell]
+ */
+public class EngineValidation {
+
+    private static final int WIDTH = 1400, HEIGHT = 1000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("--float")) {
+            floatCheck(args[1], args.length >= 3 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE);
+            return;
+        }
+        int runs = args.length >= 1 ? Integer.parseInt(args[0]) : 40;
+        int runTime = args.length >= 2 ? Integer.parseInt(args[1]) : 1000;
+
+        System.out.println("PairKernel.preferred(): " + PairKernel.preferred().getClass().getSimpleName());
+        stepCheck();
+        ensembleCheck(runs, runTime);
+    }
+
+    private static void stepCheck() {
+        System.out.printf("%-44s %14s %14s%n", "step check", "max |dpos|", "max |dhead|");
+        PairKernel[] kernels = {new ScalarPairKernel(), PairKernel.preferred()};
+        for (int n : new int[]{20, 100, 400}) {
+            for (boolean feedback : new boolean[]{false, true}) {
+                for (Flock.NeighborMode mode : Flock.NeighborMode.values()) {
+                    for (PairKernel pairs : kernels) {
+                        double dPos = 0, dHead = 0;
+                        for (int burnIn : new int[]{0, 10, 200}) {
+                            SplittableRandom rng = new SplittableRandom(n * 31L + burnIn);
+                            Flock flock = spawn(n, feedback, rng);
+                            flock.setNeighborMode(mode);
+                            for (int t = 0; t < burnIn; t++) flock.update(WIDTH, HEIGHT, rng);
+
+                            ArrayFlock fast = new ArrayFlock(flock.getAgents());
+                            fast.setNeighborMode(mode);
+                            fast.setKernel(ArrayFlock.Kernel.FAST);
+                            fast.setPairKernel(pairs);
+
+                            flock.update(WIDTH, HEIGHT, rng);
+                            fast.update(WIDTH, HEIGHT, rng);
+                            double[] d = difference(flock, fast);
+                            dPos = Math.max(dPos, d[0]);
+                            dHead = Math.max(dHead, d[1]);
+                        }
+                        System.out.printf("%-44s %14.3e %14.3e%n",
+                                "N=" + n + (feedback ? " feedback " : " ") + mode + " " + pairs.getClass().getSimpleName(),
+                                dPos, dHead);
+                    }
+                    double dPos = 0, dHead = 0;
+                    for (int burnIn : new int[]{0, 10, 200}) {
+                        SplittableRandom rng = new SplittableRandom(n * 31L + burnIn);
+                        Flock flock = spawn(n, feedback, rng);
+                        flock.setNeighborMode(mode);
+                        for (int t = 0; t < burnIn; t++) flock.update(WIDTH, HEIGHT, rng);
+
+                        FloatFlock floats = new FloatFlock(flock.getAgents());
+                        floats.setNeighborMode(mode);
+
+                        flock.update(WIDTH, HEIGHT, rng);
+                        floats.update(WIDTH, HEIGHT, rng);
+                        double[] d = difference(flock, floats);
+                        dPos = Math.max(dPos, d[0]);
+                        dHead = Math.max(dHead, d[1]);
+                    }
+                    System.out.printf("%-44s %14.3e %14.3e%n",
+                            "N=" + n + (feedback ? " feedback " : " ") + mode + " FloatFlock", dPos, dHead);
+                }
+            }
+        }
+    }
+
+    private static void ensembleCheck(int runs, int runTime) {
+        System.out.printf("%n%-44s %14s %10s %10s %10s %10s %10s%n", "ensemble check (N=60 n1=n2=10, 0/120 deg)",
+                "dir (deg)", "+-", "R", "bbox_X", "bbox_Y", "bbox +-");
+        for (ArrayFlock.Kernel kernel : ArrayFlock.Kernel.values()) {
+            CellStats stats = new CellStats();
+            for (int run = 1; run <= runs; run++) {
+                CouzinModel sim = new CouzinModel(60, 10, 10, 0, Math.toRadians(120), runTime, run, false);
+                sim.setEngine(CouzinModel.Engine.ARRAYS);
+                sim.setKernel(kernel);
+                CouzinModel.SimulationResult r = sim.runSimulation();
+                stats.add(r.groupDirection.x, r.groupDirection.y, r.boundingBox[0], r.boundingBox[1]);
+            }
+            print(kernel + " (" + runs + " runs)", stats);
+        }
+        CellStats stats = new CellStats();
+        for (int run = 1; run <= runs; run++) {
+            CouzinModel sim = new CouzinModel(60, 10, 10, 0, Math.toRadians(120), runTime, run, false);
+            sim.setEngine(CouzinModel.Engine.FLOAT);
+            CouzinModel.SimulationResult r = sim.runSimulation();
+            stats.add(r.groupDirection.x, r.groupDirection.y, r.boundingBox[0], r.boundingBox[1]);
+        }
+        print("FLOAT (" + runs + " runs)", stats);
+    }
+
+    private static void print(String label, CellStats stats) {
+        System.out.printf("%-44s %14.2f %10.2f %10.3f %10.1f %10.1f %10.1f%n", label,
+                Math.toDegrees(stats.meanDirection()), Math.toDegrees(stats.directionHalfWidth(1.96)),
+                stats.resultantLength(), stats.bboxMeanX(), stats.bboxMeanY(), stats.bboxHalfWidth(1.96));
+    }
+
+    // largest position and heading difference between the agents of flock and other
+    private static double[] difference(Flock flock, FlockEngine other) {
+        double dPos = 0, dHead = 0;
+        for (int i = 0; i < other.size(); i++) {
+            Agent a = flock.getAgents().get(i);
+            dPos = Math.max(dPos, Math.abs(periodic(a.pos.x - other.posX(i), WIDTH)));
+            dPos = Math.max(dPos, Math.abs(periodic(a.pos.y - other.posY(i), HEIGHT)));
+            double ax = a.vel.x / a.species.speed, ay = a.vel.y / a.species.speed;
+            double fx = other.velX(i) / a.species.speed, fy = other.velY(i) / a.species.speed;
+            dHead = Math.max(dHead, Math.abs(Math.atan2(ax * fy - ay * fx, ax * fx + ay * fy)));
+        }
+        return new double[]{dPos, dHead};
+    }
+
+    private static void floatCheck(String configPath, int maxRuns) throws IOException {
+        JSONObject config = new JSONObject(new String(Files.readAllBytes(Paths.get(configPath))));
+        long baseSeed = config.has("seed") ? config.getLong("seed") : new SplittableRandom().nextLong();
+        int runs = Math.min(config.getInt("num_runs"), maxRuns);
+        System.out.println("Base seed: " + baseSeed + ", " + runs + " paired runs per cell, FloatPairKernel.preferred(): "
+                + FloatPairKernel.preferred().getClass().getSimpleName());
+        System.out.printf("%-36s %9s %9s %9s %9s %9s %9s %9s%n", "cell", "|ddir|", "max", "|dbbox|",
+                "mean ddir", "dir +-", "mean dbbox", "bbox +-");
+
+        int cells = 0, within = 0;
+        double sumDir = 0, maxDir = 0, sumBox = 0;
+        long pairs = 0;
+        for (ParameterGrid.Cell cell : ParameterGrid.fromConfig(config)) {
+            CellStats doubles = new CellStats(), floats = new CellStats();
+            double cellDir = 0, cellMax = 0, cellBox = 0;
+            for (int run = 1; run <= runs; run++) {
+                long seed = Seeds.derive(baseSeed, cell, run);
+                CouzinModel.SimulationResult d = run(config, cell, seed, CouzinModel.Engine.ARRAYS);
+                CouzinModel.SimulationResult f = run(config, cell, seed, CouzinModel.Engine.FLOAT);
+                doubles.add(d.groupDirection.x, d.groupDirection.y, d.boundingBox[0], d.boundingBox[1]);
+                floats.add(f.groupDirection.x, f.groupDirection.y, f.boundingBox[0], f.boundingBox[1]);
+
+                double dDir = Math.toDegrees(Math.abs(Math.atan2(
+                        d.groupDirection.x * f.groupDirection.y - d.groupDirection.y * f.groupDirection.x,
+                        d.groupDirection.x * f.groupDirection.x + d.groupDirection.y * f.groupDirection.y)));
+                // relative bounding-box difference, both sides
+                double dBox = (Math.abs(f.boundingBox[0] - d.boundingBox[0]) / Math.max(d.boundingBox[0], 1e-9)
+                        + Math.abs(f.boundingBox[1] - d.boundingBox[1]) / Math.max(d.boundingBox[1], 1e-9)) / 2;
+                cellDir += dDir;
+                cellMax = Math.max(cellMax, dDir);
+                cellBox += dBox;
+            }
+
+            // difference of the ensemble means against its 95% interval
+            double meanDir = Math.toDegrees(Math.abs(Math.atan2(
+                    Math.sin(floats.meanDirection() - doubles.meanDirection()),
+                    Math.cos(floats.meanDirection() - doubles.meanDirection()))));
+            double dirWidth = Math.toDegrees(Math.hypot(doubles.directionHalfWidth(1.96), floats.directionHalfWidth(1.96)));
+            double meanBox = Math.max(Math.abs(floats.bboxMeanX() - doubles.bboxMeanX()),
+                    Math.abs(floats.bboxMeanY() - doubles.bboxMeanY()));
+            double boxWidth = Math.hypot(doubles.bboxHalfWidth(1.96), floats.bboxHalfWidth(1.96));
+            cells++;
+            if (!(meanDir > dirWidth) && !(meanBox > boxWidth)) within++;
+            sumDir += cellDir;
+            maxDir = Math.max(maxDir, cellMax);
+            sumBox += cellBox;
+            pairs += runs;
+
+            System.out.printf("%-36s %9.3f %9.3f %8.2f%% %9.3f %9.3f %9.2f %9.2f%n",
+                    "N=" + cell.N + " n1=" + cell.n1 + " n2=" + cell.n2 + " " + cell.angle1Deg + "/" + cell.angle2Deg,
+                    cellDir / runs, cellMax, 100 * cellBox / runs, meanDir, dirWidth, meanBox, boxWidth);
+        }
+        System.out.printf("%n%d paired runs: group direction differs by %.3f deg on average (max %.3f), bounding box by %.2f%%;"
+                        + " ensemble means agree within 95%% intervals in %d of %d cells%n",
+                pairs, sumDir / pairs, maxDir, 100 * sumBox / pairs, within, cells);
+    }
+
+    // one run of the config's model on the given engine; FAST numerics, sequential, no trajectory or observables
+    private static CouzinModel.SimulationResult run(JSONObject config, ParameterGrid.Cell cell, long seed,
+                                                    CouzinModel.Engine engine) {
+        CouzinModel sim = SimulationRunner.createModel(config, cell, seed, null);
+        sim.setEngine(engine);
+        sim.setKernel(ArrayFlock.Kernel.FAST);
+        sim.setUpdateMode(ArrayFlock.UpdateMode.SEQUENTIAL);
+        sim.setTrajectory(null, 0, 0);
+        sim.setObservables(null, 0, 0);
+        return sim.runSimulation();
+    }
+
+    private static Flock spawn(int n, boolean feedback, SplittableRandom rng) {
+        Flock flock = new Flock();
+        Species[] species = {Species.naive("naive", feedback),
+                Species.informed("g1", new Agent.Vec2(1, 0), feedback),
+                Species.informed("g2", new Agent.Vec2(0, 1), feedback)};
+        for (int i = 0; i < n; i++) {
+            double x = WIDTH / 2 - 25 + rng.nextDouble() * 50;
+            double y = HEIGHT / 2 - 25 + rng.nextDouble() * 50;
+            int informed = i < n / 5 ? 1 : i < 2 * n / 5 ? 2 : 0;
+            flock.add(new Agent(x, y, informed, species[informed], rng));
+        }
+        return flock;
+    }
+
+    private static double periodic(double d, double size) {
+        if (Math.abs(d) > size / 2) d = d > 0 ? d - size : d + size;
+        return d;
+    }
+}
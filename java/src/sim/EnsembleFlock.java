@@ -0,0 +1,277 @@
+package sim;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static sim.PairKernel.*;
+
+/**
+ * R replicates of one parameter cell stepped together. State is interleaved
+ * by agent, element i*R + r holding agent i of replicate r, so the replicates
+ * of one agent are contiguous and the neighbor scan (EnsembleKernel) runs
+ * over them in SIMD lanes, one replicate per lane, while all R small runs
+ * share one pass over the arrays.
+ *
+ * The arithmetic is that of ArrayFlock's FAST kernel (SEQUENTIAL, all pairs,
+ * scalar pair scan), replicate by replicate, so replicate r evolves exactly
+ * like a FAST ArrayFlock built from the same agents with ScalarPairKernel,
+ * whichever EnsembleKernel is used.
+ * Agent types are per replicate (forks from a burn-in draw their informed
+ * agents at random), but the speed and zones of agent i, which the neighbor
+ * scan reads for all replicates at once, must agree across replicates
+ * (canStep).
+ */
+public class EnsembleFlock {
+
+    private static final double COS_FEEDBACK = Math.cos(0.17);
+
+    private final int n, R;
+
+    // per agent and replicate, index i*R + r
+    private final double[] x, y, vx, vy, w;
+    private final int[] informed; // type, indexing species
+
+    private Species[] species = new Species[0];
+
+    // per agent, shared by the replicates
+    private final double[] invSpeed, rRep2, rOri2;
+
+    // zone sums of the agent being updated, field f of replicate r at f * R + r
+    private final double[] acc;
+    private EnsembleKernel kernel = EnsembleKernel.preferred();
+
+    /**
+     * Copy the spawned flocks, one per replicate; all must come from the same cell.
+     */
+    public EnsembleFlock(List<Flock> replicas) {
+        R = replicas.size();
+        n = replicas.get(0).size();
+        x = new double[n * R];
+        y = new double[n * R];
+        vx = new double[n * R];
+        vy = new double[n * R];
+        w = new double[n * R];
+        informed = new int[n * R];
+        invSpeed = new double[n];
+        rRep2 = new double[n];
+        rOri2 = new double[n];
+        acc = new double[PairKernel.ACC_SIZE * R];
+
+        for (int i = 0; i < n; i++) {
+            Species a = replicas.get(0).getAgents().get(i).species;
+            if (!canStep(replicas, i)) {
+                throw new IllegalArgumentException("agent " + i + " has a different speed or zones in some replicate");
+            }
+            invSpeed[i] = a.invSpeed;
+            rRep2[i] = a.rRep2;
+            rOri2[i] = a.rOri2;
+
+            for (int r = 0; r < R; r++) {
+                Agent b = replicas.get(r).getAgents().get(i);
+                int k = i * R + r;
+                x[k] = b.pos.x;
+                y[k] = b.pos.y;
+                w[k] = b.w;
+                informed[k] = b.informed;
+                if (b.informed >= species.length) species = Arrays.copyOf(species, b.informed + 1);
+                species[b.informed] = b.species;
+                // headings are read as v / speed, as in ArrayFlock.setKernel(FAST)
+                double len = Math.sqrt(b.vel.x * b.vel.x + b.vel.y * b.vel.y);
+                vx[k] = len != 0 ? b.vel.x / len * a.speed : b.vel.x;
+                vy[k] = len != 0 ? b.vel.y / len * a.speed : b.vel.y;
+            }
+        }
+    }
+
+    /**
+     * Whether the flocks can be stepped together: every agent has the same
+     * speed and zones in all of them.
+     */
+    public static boolean canStep(List<Flock> replicas) {
+        for (int i = 0; i < replicas.get(0).size(); i++) {
+            if (!canStep(replicas, i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean canStep(List<Flock> replicas, int i) {
+        Species a = replicas.get(0).getAgents().get(i).species;
+        for (Flock f : replicas) {
+            Species b = f.getAgents().get(i).species;
+            if (b.speed != a.speed || b.R_rep != a.R_rep || b.R_ori != a.R_ori) return false;
+        }
+        return true;
+    }
+
+    public void setKernel(EnsembleKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    public int replicas() {
+        return R;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /** One sequential step of every replicate. */
+    public void update(double width, double height) {
+        for (int i = 0; i < n; i++) {
+            // 1.-2. ZONE SUMS of agent i in every replicate
+            kernel.accumulate(i, n, R, rRep2[i], rOri2[i], x, y, vx, vy, invSpeed, width, height, acc);
+            for (int r = 0; r < R; r++) {
+                steer(i, i * R + r, r, width, height);
+            }
+        }
+    }
+
+    // 3.-7. of ArrayFlock.updateAgentFast for agent i of replicate r (state index k)
+    private void steer(int i, int k, int r, double width, double height) {
+        Species sp = species[informed[k]];
+        double hx = vx[k] * invSpeed[i], hy = vy[k] * invSpeed[i];
+        double rx = acc[REP_X * R + r], ry = acc[REP_Y * R + r];
+        double ax = acc[ATT_X * R + r], ay = acc[ATT_Y * R + r];
+        double ox = acc[ORI_X * R + r], oy = acc[ORI_Y * R + r];
+        double reps = acc[REP_COUNT * R + r], social = acc[SOCIAL_COUNT * R + r];
+        if (rRep2[i] > 0) {
+            // the scan counted the agent itself as a repulsion neighbor; it belongs to the social zone
+            reps--;
+            if (rOri2[i] > 0) {
+                ox += hx;
+                oy += hy;
+                social++;
+            }
+        }
+
+        double desX, desY, len;
+        if (reps > 0) {
+            len = Math.sqrt(rx * rx + ry * ry);
+            desX = len == 0 ? rx : rx / len;
+            desY = len == 0 ? ry : ry / len;
+        } else if (social > 0) {
+            len = Math.sqrt(ax * ax + ay * ay);
+            if (len != 0) {
+                ax /= len;
+                ay /= len;
+            }
+            len = Math.sqrt(ox * ox + oy * oy);
+            if (len != 0) {
+                ox /= len;
+                oy /= len;
+            }
+            desX = ax + ox;
+            desY = ay + oy;
+            len = Math.sqrt(desX * desX + desY * desY);
+            if (len != 0) {
+                desX /= len;
+                desY /= len;
+            }
+        } else {
+            desX = hx;
+            desY = hy;
+        }
+
+        if (sp.informed) {
+            if (sp.useFeedback) {
+                if (hx * sp.gx + hy * sp.gy > COS_FEEDBACK && w[k] < sp.w_max) {
+                    w[k] += sp.weight_inc;
+                } else if (w[k] > 0.0) {
+                    w[k] -= sp.weight_dec;
+                }
+            }
+            desX += sp.gx * w[k];
+            desY += sp.gy * w[k];
+            len = Math.sqrt(desX * desX + desY * desY);
+            if (len != 0) {
+                desX /= len;
+                desY /= len;
+            }
+        }
+
+        double nvx, nvy;
+        if (hx * desX + hy * desY < sp.cosTurn) {
+            double ca = sp.cosTurn;
+            double sa = (hx * desY - hy * desX) > 0 ? sp.sinTurn : -sp.sinTurn;
+            nvx = ca * hx - sa * hy;
+            nvy = sa * hx + ca * hy;
+        } else {
+            nvx = desX;
+            nvy = desY;
+        }
+        len = Math.sqrt(nvx * nvx + nvy * nvy);
+        if (len != 0) {
+            nvx /= len;
+            nvy /= len;
+        }
+        nvx *= sp.speed;
+        nvy *= sp.speed;
+        vx[k] = nvx;
+        vy[k] = nvy;
+
+        double nx = x[k] + nvx;
+        double ny = y[k] + nvy;
+        if (nx < 0) nx += width;
+        if (nx >= width) nx -= width;
+        if (ny < 0) ny += height;
+        if (ny >= height) ny -= height;
+        x[k] = nx;
+        y[k] = ny;
+    }
+
+    /** Centroid of replicate r on the torus, as ArrayFlock.calculateGroupCentroid. */
+    public Agent.Vec2 calculateGroupCentroid(int r, double width, double height) {
+        double sumCosX = 0;
+        double sumSinX = 0;
+        double sumCosY = 0;
+        double sumSinY = 0;
+
+        for (int i = 0; i < n; i++) {
+            double angleX = (x[i * R + r] / width) * 2 * Math.PI;
+            double angleY = (y[i * R + r] / height) * 2 * Math.PI;
+
+            sumCosX += Math.cos(angleX);
+            sumSinX += Math.sin(angleX);
+            sumCosY += Math.cos(angleY);
+            sumSinY += Math.sin(angleY);
+        }
+
+        double cx = (Math.atan2(sumSinX, sumCosX) / (2 * Math.PI)) * width;
+        double cy = (Math.atan2(sumSinY, sumCosY) / (2 * Math.PI)) * height;
+
+        if (cx < 0) cx += width;
+        if (cx >= width) cx -= width;
+        if (cy < 0) cy += height;
+        if (cy >= height) cy -= height;
+
+        return new Agent.Vec2(cx, cy);
+    }
+
+    /** Bounding box of replicate r, as ArrayFlock.computeBoundingBox. */
+    public double[] computeBoundingBox(int r, Agent.Vec2 groupDir, Agent.Vec2 groupCentroid,
+                                       double width, double height) {
+        double minAlong = Double.POSITIVE_INFINITY;
+        double maxAlong = Double.NEGATIVE_INFINITY;
+        double minPerp = Double.POSITIVE_INFINITY;
+        double maxPerp = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < n; i++) {
+            double dx = x[i * R + r] - groupCentroid.x;
+            double dy = y[i * R + r] - groupCentroid.y;
+            if (dx > width / 2.0) dx -= width;
+            if (dx < -width / 2.0) dx += width;
+            if (dy > height / 2.0) dy -= height;
+            if (dy < -height / 2.0) dy += height;
+
+            double along = (dx * groupDir.x + dy * groupDir.y);
+            double perp = (dx * -groupDir.y + dy * groupDir.x);
+
+            if (along < minAlong) minAlong = along;
+            if (along > maxAlong) maxAlong = along;
+            if (perp < minPerp) minPerp = perp;
+            if (perp > maxPerp) maxPerp = perp;
+        }
+
+        return new double[]{maxAlong - minAlong, maxPerp - minPerp};
+    }
+}
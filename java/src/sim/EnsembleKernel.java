@@ -0,0 +1,38 @@
+package sim;
+
+/**
+ * Neighbor scan of EnsembleFlock: the zone sums of one agent in every
+ * replicate at once. State is interleaved (element j*R + r is agent j of
+ * replicate r), so for a fixed neighbor j the R replicates are contiguous and
+ * independent, and the scan vectorizes over replicates rather than over
+ * neighbors. Each replicate still sums its neighbors in order 0..n, with the
+ * arithmetic of ScalarPairKernel, so the result does not depend on the lane
+ * width.
+ */
+public interface EnsembleKernel {
+
+    /**
+     * Overwrite acc with the sums of agent i over all n agents, replicate by
+     * replicate: acc[f * R + r] holds field f (PairKernel.REP_X ..
+     * PairKernel.SOCIAL_COUNT) of replicate r. As in PairKernel, the agent is
+     * counted as its own repulsion neighbor.
+     */
+    void accumulate(int i, int n, int R, double rRep2, double rOri2,
+                    double[] x, double[] y, double[] vx, double[] vy, double[] invSpeed,
+                    double width, double height, double[] acc);
+
+    /**
+     * sim.VectorEnsembleKernel from java/simd when available, the scalar
+     * kernel otherwise (see PairKernel.preferred()).
+     */
+    static EnsembleKernel preferred() {
+        return Preferred.KERNEL;
+    }
+
+    final class Preferred {
+        static final EnsembleKernel KERNEL = SimdKernels.load("sim.VectorEnsembleKernel", new ScalarEnsembleKernel());
+
+        private Preferred() {
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package sim;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static sim.PairKernel.*;
+
+/**
+ * ArrayFlock's FAST kernel on float state: positions, velocities, weights and
+ * the per-type parameters are float, which halves the bytes the pair scan
+ * reads per neighbor and doubles the lanes of its SIMD variant
+ * (FloatPairKernel). Steps are sequential and in place, as ArrayFlock's
+ * default.
+ *
+ * Positions in a 1400 x 1000 box carry about 1e-4 absolute error in float,
+ * headings about 1e-7; the rounding grows through the chaotic dynamics like
+ * any perturbation, so float runs agree with double runs in distribution, not
+ * trajectory by trajectory. EngineValidation --float measures the difference
+ * on a config's grid.
+ *
+ * The neighbor structures (NeighborGrid, KdTree, VerletList) work on doubles
+ * and are built from a double copy of the positions at the start of each step.
+ * Observables (centroid, bounding box) are accumulated in double.
+ */
+public class FloatFlock implements FlockEngine {
+
+    // |angle to target| < 0.17 rad, the feedback condition of Agent.update, as a dot product
+    private static final float COS_FEEDBACK = (float) Math.cos(0.17);
+
+    /** A Species rounded to float, as the kernel reads it. */
+    private static final class Params {
+        final float speed, rRep2, rOri2, cosTurn, sinTurn, gx, gy, wMax, weightInc, weightDec;
+        final boolean informed, useFeedback;
+
+        Params(Species s) {
+            speed = (float) s.speed;
+            rRep2 = (float) s.rRep2;
+            rOri2 = (float) s.rOri2;
+            cosTurn = (float) s.cosTurn;
+            sinTurn = (float) s.sinTurn;
+            gx = (float) s.gx;
+            gy = (float) s.gy;
+            wMax = (float) s.w_max;
+            weightInc = (float) s.weight_inc;
+            weightDec = (float) s.weight_dec;
+            informed = s.informed;
+            useFeedback = s.useFeedback;
+        }
+    }
+
+    private final int n;
+
+    // state
+    private final float[] x, y;     // position
+    private final float[] vx, vy;   // direction * speed
+    private final float[] w;        // preference weight
+    private final float[] invSpeed; // 1 / speed per agent, read by the pair scan
+
+    private final int[] informed;
+    private Params[] params = new Params[0];
+
+    private Flock.NeighborMode neighborMode = Flock.NeighborMode.ALL_PAIRS;
+    private final NeighborGrid grid = new NeighborGrid();
+    private final double maxRadius, maxSpeed;
+    private final KdTree tree = new KdTree(); // TOPOLOGICAL
+    private KdTree.Search search;
+    private int nearestK = 7;
+    private VerletList verlet = new VerletList(VerletList.DEFAULT_SKIN);
+    private final double[] startX, startY; // double copy of the positions for the neighbor structures
+
+    private FloatPairKernel pairs = FloatPairKernel.preferred();
+    private final int[] candidates;
+    private final float[] acc = new float[ACC_SIZE];
+    private long pairEvaluations; // see FlockEngine.pairEvaluations
+
+    /**
+     * Copy the initial state of the given agents, rounded to float; headings
+     * are scaled to each agent's speed as by ArrayFlock.setKernel(FAST).
+     */
+    public FloatFlock(List<Agent> agents) {
+        n = agents.size();
+        x = new float[n];
+        y = new float[n];
+        vx = new float[n];
+        vy = new float[n];
+        w = new float[n];
+        invSpeed = new float[n];
+        informed = new int[n];
+        startX = new double[n];
+        startY = new double[n];
+        candidates = new int[n];
+
+        double radius = 0, fastest = 0;
+        for (int i = 0; i < n; i++) {
+            Agent a = agents.get(i);
+            x[i] = (float) a.pos.x;
+            y[i] = (float) a.pos.y;
+            double len = Math.sqrt(a.vel.x * a.vel.x + a.vel.y * a.vel.y);
+            double scale = len == 0 ? 1 : a.species.speed / len;
+            vx[i] = (float) (a.vel.x * scale);
+            vy[i] = (float) (a.vel.y * scale);
+            w[i] = (float) a.w;
+            invSpeed[i] = (float) a.species.invSpeed;
+            informed[i] = a.informed;
+            if (a.informed >= params.length) params = Arrays.copyOf(params, a.informed + 1);
+            params[a.informed] = new Params(a.species);
+            radius = Math.max(radius, Math.max(a.species.R_ori, a.species.R_rep));
+            fastest = Math.max(fastest, a.species.speed);
+        }
+        maxRadius = radius;
+        maxSpeed = fastest;
+    }
+
+    public void setNeighborMode(Flock.NeighborMode neighborMode) {
+        this.neighborMode = neighborMode;
+    }
+
+    /** Neighbors per agent in TOPOLOGICAL mode. */
+    public void setNearestNeighbors(int k) {
+        this.nearestK = k;
+    }
+
+    /** Extra list radius in VERLET mode; see VerletList. */
+    public void setVerletSkin(double skin) {
+        this.verlet = new VerletList(skin);
+    }
+
+    /** Neighbor scan; defaults to FloatPairKernel.preferred(). */
+    public void setPairKernel(FloatPairKernel pairs) {
+        this.pairs = pairs;
+    }
+
+    @Override
+    public void update(double width, double height, SplittableRandom rng) {
+        if (neighborMode != Flock.NeighborMode.ALL_PAIRS) {
+            for (int i = 0; i < n; i++) {
+                startX[i] = x[i];
+                startY[i] = y[i];
+            }
+        }
+        if (neighborMode == Flock.NeighborMode.GRID) {
+            // cell size covers one step of movement by both agents, see Flock.updateWithGrid
+            grid.rebuild(startX, startY, n, maxRadius + 2 * maxSpeed, width, height);
+        } else if (neighborMode == Flock.NeighborMode.TOPOLOGICAL) {
+            tree.rebuild(startX, startY, n, width, height);
+            if (search == null || search.k != nearestK) search = new KdTree.Search(nearestK);
+        } else if (neighborMode == Flock.NeighborMode.VERLET
+                && verlet.needsRebuild(startX, startY, n, maxSpeed, width, height)) {
+            verlet.rebuild(startX, startY, n, maxRadius, width, height);
+        }
+
+        float fw = (float) width, fh = (float) height;
+        for (int i = 0; i < n; i++) {
+            int count;
+            switch (neighborMode) {
+                case GRID:
+                    count = grid.gather(startX[i], startY[i], candidates);
+                    break;
+                case TOPOLOGICAL:
+                    count = tree.gather(startX[i], startY[i], i, search, candidates);
+                    break;
+                case VERLET:
+                    count = verlet.gather(i, candidates);
+                    break;
+                default:
+                    count = -1;
+            }
+            if (count >= 0) {
+                updateAgent(i, candidates, count, fw, fh);
+                pairEvaluations += count;
+            } else {
+                updateAgent(i, null, n, fw, fh);
+                pairEvaluations += n;
+            }
+        }
+    }
+
+    // ArrayFlock.updateAgentFast in float
+    private void updateAgent(int i, int[] idx, int count, float width, float height) {
+        Params sp = params[informed[i]];
+        float px = x[i], py = y[i];
+        float hx = vx[i] * invSpeed[i], hy = vy[i] * invSpeed[i]; // current heading (unit)
+
+        // 1.-2. ZONE SUMS
+        pairs.accumulate(px, py, sp.rRep2, sp.rOri2, x, y, vx, vy, invSpeed, idx, count, width, height, acc);
+        float repX = acc[REP_X], repY = acc[REP_Y];
+        float attX = acc[ATT_X], attY = acc[ATT_Y];
+        float oriX = acc[ORI_X], oriY = acc[ORI_Y];
+        float repCount = acc[REP_COUNT], socialCount = acc[SOCIAL_COUNT];
+        if (sp.rRep2 > 0) {
+            // the scan counted the agent itself as a repulsion neighbor; it belongs to the social zone
+            repCount--;
+            if (sp.rOri2 > 0) {
+                oriX += hx;
+                oriY += hy;
+                socialCount++;
+            }
+        }
+
+        // 3. SOCIAL DECISION (before preference)
+        float desX, desY, len;
+        if (repCount > 0) {
+            len = (float) Math.sqrt(repX * repX + repY * repY);
+            desX = len == 0 ? repX : repX / len;
+            desY = len == 0 ? repY : repY / len;
+        } else if (socialCount > 0) {
+            len = (float) Math.sqrt(attX * attX + attY * attY);
+            if (len != 0) {
+                attX /= len;
+                attY /= len;
+            }
+            len = (float) Math.sqrt(oriX * oriX + oriY * oriY);
+            if (len != 0) {
+                oriX /= len;
+                oriY /= len;
+            }
+            desX = attX + oriX;
+            desY = attY + oriY;
+            len = (float) Math.sqrt(desX * desX + desY * desY);
+            if (len != 0) {
+                desX /= len;
+                desY /= len;
+            }
+        } else {
+            desX = hx;
+            desY = hy;
+        }
+
+        // 4. ADD PREFERENCE (informed individuals only)
+        if (sp.informed) {
+            if (sp.useFeedback) {
+                if (hx * sp.gx + hy * sp.gy > COS_FEEDBACK && w[i] < sp.wMax) {
+                    w[i] += sp.weightInc;
+                } else if (w[i] > 0f) {
+                    w[i] -= sp.weightDec;
+                }
+            }
+
+            desX += sp.gx * w[i];
+            desY += sp.gy * w[i];
+            len = (float) Math.sqrt(desX * desX + desY * desY);
+            if (len != 0) {
+                desX /= len;
+                desY /= len;
+            }
+        }
+
+        // 5. MAX TURNING RATE: angle > maxTurn  <=>  cos(angle) < cos(maxTurn)
+        float nvx, nvy;
+        if (hx * desX + hy * desY < sp.cosTurn) {
+            float ca = sp.cosTurn;
+            float sa = (hx * desY - hy * desX) > 0 ? sp.sinTurn : -sp.sinTurn;
+            nvx = ca * hx - sa * hy;
+            nvy = sa * hx + ca * hy;
+        } else {
+            nvx = desX;
+            nvy = desY;
+        }
+
+        len = (float) Math.sqrt(nvx * nvx + nvy * nvy);
+        if (len != 0) {
+            nvx /= len;
+            nvy /= len;
+        }
+        nvx *= sp.speed;
+        nvy *= sp.speed;
+        vx[i] = nvx;
+        vy[i] = nvy;
+
+        // 7. UPDATE POSITION + WRAP
+        float nx = px + nvx;
+        float ny = py + nvy;
+        if (nx < 0) nx += width;
+        if (nx >= width) nx -= width;
+        if (ny < 0) ny += height;
+        if (ny >= height) ny -= height;
+        x[i] = nx;
+        y[i] = ny;
+    }
+
+    @Override
+    public long pairEvaluations() {
+        return pairEvaluations;
+    }
+
+    @Override
+    public long neighborListBuilds() {
+        return verlet.builds();
+    }
+
+    @Override
+    public Agent.Vec2 calculateGroupCentroid(double width, double height) {
+        double sumCosX = 0;
+        double sumSinX = 0;
+        double sumCosY = 0;
+        double sumSinY = 0;
+
+        for (int i = 0; i < n; i++) {
+            double angleX = (x[i] / width) * 2 * Math.PI;
+            double angleY = (y[i] / height) * 2 * Math.PI;
+
+            sumCosX += Math.cos(angleX);
+            sumSinX += Math.sin(angleX);
+            sumCosY += Math.cos(angleY);
+            sumSinY += Math.sin(angleY);
+        }
+
+        double cx = (Math.atan2(sumSinX, sumCosX) / (2 * Math.PI)) * width;
+        double cy = (Math.atan2(sumSinY, sumCosY) / (2 * Math.PI)) * height;
+
+        if (cx < 0) cx += width;
+        if (cx >= width) cx -= width;
+        if (cy < 0) cy += height;
+        if (cy >= height) cy -= height;
+
+        return new Agent.Vec2(cx, cy);
+    }
+
+    @Override
+    public double[] computeBoundingBox(Agent.Vec2 groupDir, Agent.Vec2 groupCentroid, double width, double height) {
+        double minAlong = Double.POSITIVE_INFINITY;
+        double maxAlong = Double.NEGATIVE_INFINITY;
+        double minPerp = Double.POSITIVE_INFINITY;
+        double maxPerp = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < n; i++) {
+            // minimal periodic displacement from the centroid, as Flock.periodicDist
+            double dx = x[i] - groupCentroid.x;
+            double dy = y[i] - groupCentroid.y;
+            if (dx > width / 2.0) dx -= width;
+            if (dx < -width / 2.0) dx += width;
+            if (dy > height / 2.0) dy -= height;
+            if (dy < -height / 2.0) dy += height;
+
+            double along = (dx * groupDir.x + dy * groupDir.y);
+            double perp = (dx * -groupDir.y + dy * groupDir.x);
+
+            if (along < minAlong) minAlong = along;
+            if (along > maxAlong) maxAlong = along;
+            if (perp < minPerp) minPerp = perp;
+            if (perp > maxPerp) maxPerp = perp;
+        }
+
+        return new double[]{maxAlong - minAlong, maxPerp - minPerp};
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public double posX(int i) {
+        return x[i];
+    }
+
+    @Override
+    public double posY(int i) {
+        return y[i];
+    }
+
+    @Override
+    public double velX(int i) {
+        return vx[i];
+    }
+
+    @Override
+    public double velY(int i) {
+        return vy[i];
+    }
+
+    @Override
+    public int informed(int i) {
+        return informed[i];
+    }
+}
@@ -0,0 +1,33 @@
+package sim;
+
+/**
+ * Neighbor scan of FloatFlock: PairKernel on float state. Same zones, same
+ * sums and the same self-counting convention, with float arithmetic, so a
+ * SIMD register holds twice as many lanes as with doubles. The sums are
+ * written to a float acc laid out as PairKernel's.
+ */
+public interface FloatPairKernel {
+
+    /**
+     * Overwrite acc with the sums over neighbors idx[0..count) (or 0..count
+     * when idx is null); see PairKernel.accumulate.
+     */
+    void accumulate(float px, float py, float rRep2, float rOri2,
+                    float[] x, float[] y, float[] vx, float[] vy, float[] invSpeed,
+                    int[] idx, int count, float width, float height, float[] acc);
+
+    /**
+     * sim.VectorFloatPairKernel from java/simd when available, the scalar
+     * kernel otherwise (see PairKernel.preferred()).
+     */
+    static FloatPairKernel preferred() {
+        return Preferred.KERNEL;
+    }
+
+    final class Preferred {
+        static final FloatPairKernel KERNEL = SimdKernels.load("sim.VectorFloatPairKernel", new ScalarFloatPairKernel());
+
+        private Preferred() {
+        }
+    }
+}
@@ -2,11 +2,38 @@ package sim;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
-public class Flock {
+public class Flock implements FlockEngine {
+
+    /** How agents find their neighbors each step. */
+    public enum NeighborMode {
+        ALL_PAIRS,   // reference: every agent scans the whole flock
+        GRID,        // uniform cell list over the torus, rebuilt once per step
+        TOPOLOGICAL, // each agent interacts with its k nearest neighbors (KdTree), not a metric zone
+        VERLET       // per-agent lists within R_ori + skin, rebuilt only when agents have moved enough (VerletList)
+    }
 
     private final List<Agent> agents;
+    private NeighborMode neighborMode = NeighborMode.ALL_PAIRS;
+
+    // scratch buffers for GRID mode, reused across steps
+    private final NeighborGrid grid = new NeighborGrid();
+    private final List<Agent> nearby = new ArrayList<>();
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private int[] candidates = new int[0];
+
+    // TOPOLOGICAL mode
+    private int nearestK = 7;
+    private final KdTree tree = new KdTree();
+    private KdTree.Search search;
+    private int[] nearest = new int[0];
+
+    // VERLET mode
+    private VerletList verlet = new VerletList(VerletList.DEFAULT_SKIN);
+
+    private long pairEvaluations; // see FlockEngine.pairEvaluations
 
     public Flock() {
         this.agents = new ArrayList<>();
@@ -20,19 +47,194 @@ public class Flock {
         return agents;
     }
 
+    @Override
+    public int size() {
+        return agents.size();
+    }
+
+    @Override
+    public double posX(int i) {
+        return agents.get(i).pos.x;
+    }
+
+    @Override
+    public double posY(int i) {
+        return agents.get(i).pos.y;
+    }
+
+    @Override
+    public double velX(int i) {
+        return agents.get(i).vel.x;
+    }
+
+    @Override
+    public double velY(int i) {
+        return agents.get(i).vel.y;
+    }
+
+    @Override
+    public int informed(int i) {
+        return agents.get(i).informed;
+    }
+
+    public void setNeighborMode(NeighborMode neighborMode) {
+        this.neighborMode = neighborMode;
+    }
+
+    /** Neighbors per agent in TOPOLOGICAL mode. */
+    public void setNearestNeighbors(int k) {
+        this.nearestK = k;
+    }
+
+    /** Extra list radius in VERLET mode; see VerletList. */
+    public void setVerletSkin(double skin) {
+        this.verlet = new VerletList(skin);
+    }
+
     /**
      * Update all agents one timestep.
      */
-    public void update(double width, double height, Random rng) {
+    @Override
+    public void update(double width, double height, SplittableRandom rng) {
+        if (neighborMode == NeighborMode.GRID) {
+            updateWithGrid(width, height, rng);
+            return;
+        }
+        if (neighborMode == NeighborMode.TOPOLOGICAL) {
+            updateTopological(width, height, rng);
+            return;
+        }
+        if (neighborMode == NeighborMode.VERLET) {
+            updateWithLists(width, height, rng);
+            return;
+        }
         for (Agent a : agents) {
             a.update(agents, width, height, rng);
         }
+        pairEvaluations += (long) agents.size() * agents.size();
+    }
+
+    @Override
+    public long pairEvaluations() {
+        return pairEvaluations;
+    }
+
+    @Override
+    public long neighborListBuilds() {
+        return verlet.builds();
+    }
+
+    /**
+     * Same sequential update, but each agent only sees the agents in the grid
+     * cells around it. Cells are sized R_ori + 2*speed: agents move while the
+     * step is in progress, so a neighbor can be up to one step further away
+     * than at rebuild time, and the agent itself up to one step as well.
+     */
+    private void updateWithGrid(double width, double height, SplittableRandom rng) {
+        int n = agents.size();
+        if (xs.length < n) {
+            xs = new double[n];
+            ys = new double[n];
+            candidates = new int[n];
+        }
+
+        double maxRadius = 0;
+        double maxSpeed = 0;
+        for (int i = 0; i < n; i++) {
+            Agent a = agents.get(i);
+            xs[i] = a.pos.x;
+            ys[i] = a.pos.y;
+            maxRadius = Math.max(maxRadius, Math.max(a.species.R_ori, a.species.R_rep));
+            maxSpeed = Math.max(maxSpeed, a.species.speed);
+        }
+        grid.rebuild(xs, ys, n, maxRadius + 2 * maxSpeed, width, height);
+
+        for (Agent a : agents) {
+            int count = grid.gather(a.pos.x, a.pos.y, candidates);
+            nearby.clear();
+            for (int k = 0; k < count; k++) {
+                nearby.add(agents.get(candidates[k]));
+            }
+            a.update(nearby, width, height, rng);
+            pairEvaluations += count;
+        }
+    }
+
+    /**
+     * Same sequential update over each agent's Verlet list, rebuilt only when
+     * the agents may have moved through the skin since the last build.
+     */
+    private void updateWithLists(double width, double height, SplittableRandom rng) {
+        int n = agents.size();
+        if (xs.length < n) {
+            xs = new double[n];
+            ys = new double[n];
+            candidates = new int[n];
+        }
+
+        double maxRadius = 0;
+        double maxSpeed = 0;
+        for (int i = 0; i < n; i++) {
+            Agent a = agents.get(i);
+            xs[i] = a.pos.x;
+            ys[i] = a.pos.y;
+            maxRadius = Math.max(maxRadius, Math.max(a.species.R_ori, a.species.R_rep));
+            maxSpeed = Math.max(maxSpeed, a.species.speed);
+        }
+        if (verlet.needsRebuild(xs, ys, n, maxSpeed, width, height)) {
+            verlet.rebuild(xs, ys, n, maxRadius, width, height);
+        }
+
+        for (int i = 0; i < n; i++) {
+            int count = verlet.gather(i, candidates);
+            nearby.clear();
+            for (int k = 0; k < count; k++) {
+                nearby.add(agents.get(candidates[k]));
+            }
+            agents.get(i).update(nearby, width, height, rng);
+            pairEvaluations += count;
+        }
+    }
+
+    /**
+     * Same sequential update, but each agent sees only itself and its k
+     * nearest neighbors, chosen from the positions at the start of the step
+     * (the tree is built once per step; agents earlier in the step have moved
+     * by at most one step since). Agents in this mode have an unbounded R_ori
+     * (see CouzinModel), so every chosen neighbor outside R_rep is social.
+     */
+    private void updateTopological(double width, double height, SplittableRandom rng) {
+        int n = agents.size();
+        if (xs.length < n) {
+            xs = new double[n];
+            ys = new double[n];
+        }
+        if (nearest.length < nearestK + 1) nearest = new int[nearestK + 1];
+        if (search == null || search.k != nearestK) search = new KdTree.Search(nearestK);
+
+        for (int i = 0; i < n; i++) {
+            xs[i] = agents.get(i).pos.x;
+            ys[i] = agents.get(i).pos.y;
+        }
+        tree.rebuild(xs, ys, n, width, height);
+
+        for (int i = 0; i < n; i++) {
+            Agent a = agents.get(i);
+            int count = tree.gather(a.pos.x, a.pos.y, i, search, nearest);
+            nearby.clear();
+            for (int k = 0; k < count; k++) {
+                nearby.add(agents.get(nearest[k]));
+            }
+            a.update(nearby, width, height, rng);
+            pairEvaluations += count;
+        }
     }
 
     /**
      * Compute the centroid on a torus (mean circular coordinate mapping).
      * Equivalent to your Processing version.
      */
+    @Override
     public Agent.Vec2 calculateGroupCentroid(double width, double height) {
         double sumCosX = 0;
         double sumSinX = 0;
@@ -78,6 +280,7 @@ public class Flock {
     }
 
     // compute bounding box along and perpendicular to group direction
+    @Override
     public double[] computeBoundingBox(Agent.Vec2 groupDir, Agent.Vec2 groupCentroid, double width, double height) {
         double minAlong = Double.POSITIVE_INFINITY;
         double maxAlong = Double.NEGATIVE_INFINITY;
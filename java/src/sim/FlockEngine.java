@@ -0,0 +1,38 @@
+package sim;
+
+import java.util.SplittableRandom;
+
+/**
+ * A flock that can be stepped and measured by CouzinModel. Implemented by the
+ * object-per-agent Flock and by the primitive-array ArrayFlock.
+ */
+public interface FlockEngine {
+
+    /** Update all agents one timestep. */
+    void update(double width, double height, SplittableRandom rng);
+
+    /** Centroid on the torus (mean circular coordinate mapping). */
+    Agent.Vec2 calculateGroupCentroid(double width, double height);
+
+    /** Extent along and perpendicular to groupDir, measured from groupCentroid. */
+    double[] computeBoundingBox(Agent.Vec2 groupDir, Agent.Vec2 groupCentroid, double width, double height);
+
+    int size();
+
+    double posX(int i);
+
+    double posY(int i);
+
+    double velX(int i);
+
+    double velY(int i);
+
+    /** 0 = naive, 1/2 = informed types */
+    int informed(int i);
+
+    /** Neighbor candidates examined by all steps so far (agent itself included), for SweepMetrics. */
+    long pairEvaluations();
+
+    /** Verlet neighbor-list builds by all steps so far (0 outside VERLET mode), for SweepMetrics. */
+    long neighborListBuilds();
+}
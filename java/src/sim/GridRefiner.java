@@ -0,0 +1,223 @@
+package sim;
+
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Coarse-to-fine refinement of one grid axis (angle2_deg by default). Each
+ * line of cells that differ only along the axis starts at the configured
+ * values; once all runs of a round are in, the intervals between neighboring
+ * values whose outcomes differ most get a cell at their midpoint, and so on
+ * until the response is flat, the spacing reaches min_step or the line has
+ * max_points values. The budget goes to transitions, such as the switch from
+ * averaging the two targets to choosing one, instead of flat regions.
+ *
+ * The outcome of a cell is the mean resultant vector of its group directions,
+ * R (cos theta, sin theta) with circular mean theta and resultant length R;
+ * the change across an interval is the distance between those vectors
+ * (0 to 2), so a turn of the mean and a drop in R (directions splitting
+ * between targets) both count.
+ *
+ * Config: "refine": {"axis": "angle2_deg", "max_points": 40, "min_step": 1,
+ *                    "tolerance": 0.05, "per_round": 4}
+ * (min_step in axis units; per_round = intervals split per line and round)
+ */
+public class GridRefiner {
+
+    /** One value of a line's axis and the statistics of its runs. */
+    public static class Point {
+        public final ParameterGrid.Cell cell;
+        public final CellStats stats = new CellStats();
+
+        Point(ParameterGrid.Cell cell) {
+            this.cell = cell;
+        }
+    }
+
+    /** A run to schedule: replicate run of point's cell. */
+    public static class Run {
+        public final Point point;
+        public final int run;
+
+        Run(Point point, int run) {
+            this.point = point;
+            this.run = run;
+        }
+    }
+
+    /** Progress of one line. Guarded by its own monitor. */
+    public static class Line {
+        public final ParameterGrid.Cell base;
+        private final TreeMap<Double, Point> points = new TreeMap<>();
+        private int inFlight;
+        private int rounds;
+        private boolean failed; // a run threw; no further rounds
+
+        Line(ParameterGrid.Cell base) {
+            this.base = base;
+        }
+
+        /** No runs in flight and none left to schedule. */
+        public synchronized boolean finished() {
+            return inFlight == 0;
+        }
+
+        /** Axis values reached so far, ascending. */
+        public synchronized double[] values() {
+            return points.keySet().stream().mapToDouble(Double::doubleValue).toArray();
+        }
+
+        public synchronized int rounds() {
+            return rounds;
+        }
+
+        /** A run of the line threw, so it got no rounds after that one. */
+        public synchronized boolean failed() {
+            return failed;
+        }
+    }
+
+    private final String axis;
+    private final int maxPoints, perRound, runs;
+    private final double minStep, tolerance;
+    private final ParameterGrid grid;
+    private final Map<String, double[]> done; // runs already in the output, keyed as RunRecord.key
+
+    public GridRefiner(JSONObject refine, ParameterGrid grid, int runsPerCell, Map<String, double[]> done) {
+        axis = refine.optString("axis", "angle2_deg");
+        maxPoints = refine.optInt("max_points", 40);
+        minStep = refine.optDouble("min_step", 1.0);
+        tolerance = refine.optDouble("tolerance", 0.05);
+        perRound = refine.optInt("per_round", 4);
+        runs = runsPerCell;
+        this.grid = grid;
+        this.done = done;
+        grid.values(axis); // unknown or unusable axes fail here
+    }
+
+    public String axis() {
+        return axis;
+    }
+
+    /** One cell per line, to hand to start. */
+    public ParameterGrid lines() {
+        return grid.lines(axis);
+    }
+
+    /**
+     * Start a line at the configured axis values, counting runs already in the
+     * output towards their cells, and add the first runs to schedule to next
+     * (none when the line is complete without new runs).
+     */
+    public Line start(ParameterGrid.Cell base, List<Run> next) {
+        Line line = new Line(base);
+        synchronized (line) {
+            for (double v : grid.values(axis)) add(line, v, next);
+            advance(line, next);
+        }
+        return line;
+    }
+
+    /**
+     * Record a finished run of the point; once the line's round is complete,
+     * return the runs of the next round (empty when the line is done).
+     */
+    public List<Run> complete(Line line, Point point, RunRecord r) {
+        List<Run> next = new ArrayList<>();
+        synchronized (line) {
+            point.stats.add(r.dirX, r.dirY, r.bboxX, r.bboxY);
+            if (--line.inFlight == 0 && !line.failed) advance(line, next);
+        }
+        return next;
+    }
+
+    /**
+     * Record a run that threw: it no longer counts as in flight, and the line
+     * stops after the runs of its current round.
+     */
+    public void fail(Line line) {
+        synchronized (line) {
+            line.failed = true;
+            line.inFlight--;
+        }
+    }
+
+    /** The line's position on the other axes and the values it was refined to, for the log. */
+    public String summary(Line line) {
+        double[] values = line.values();
+        return label(line) + ": " + axis + (line.failed() ? " stopped after " : " refined in ") + line.rounds()
+                + " rounds " + (line.failed() ? "at " : "to ") + values.length + " values " + Arrays.toString(values);
+    }
+
+    /** The line's position on the other axes, for messages. */
+    public String label(Line line) {
+        ParameterGrid.Cell c = line.base;
+        StringBuilder sb = new StringBuilder("Line N=").append(c.N);
+        if (!axis.equals("p")) sb.append(" n1=").append(c.n1).append(" n2=").append(c.n2);
+        if (!axis.equals("angle1_deg")) sb.append(" angle1=").append(c.angle1Deg);
+        if (!axis.equals("angle2_deg")) sb.append(" angle2=").append(c.angle2Deg);
+        return sb.toString();
+    }
+
+    // add rounds until one has runs to schedule or nothing is left to refine
+    private void advance(Line line, List<Run> next) {
+        while (line.inFlight == 0 && refine(line, next)) {
+            line.rounds++;
+        }
+    }
+
+    // split the intervals with the largest change; false when none qualifies
+    private boolean refine(Line line, List<Run> next) {
+        List<double[]> candidates = new ArrayList<>(); // {midpoint, change}
+        Map.Entry<Double, Point> prev = null;
+        for (Map.Entry<Double, Point> e : line.points.entrySet()) {
+            if (prev != null) {
+                double a = prev.getKey(), b = e.getKey(), mid = (a + b) / 2;
+                double change = change(prev.getValue().stats, e.getValue().stats);
+                if (b - a >= 2 * minStep && change >= tolerance && distinct(line, prev.getValue(), e.getValue(), mid)) {
+                    candidates.add(new double[]{mid, change});
+                }
+            }
+            prev = e;
+        }
+        int room = Math.min(perRound, maxPoints - line.points.size());
+        if (candidates.isEmpty() || room <= 0) return false;
+        candidates.sort((x, y) -> Double.compare(y[1], x[1]));
+        for (int k = 0; k < Math.min(room, candidates.size()); k++) add(line, candidates.get(k)[0], next);
+        return true;
+    }
+
+    // the midpoint is a different model from both ends (p only moves n1 in steps of 1/N)
+    private boolean distinct(Line line, Point a, Point b, double mid) {
+        ParameterGrid.Cell c = grid.along(line.base, axis, mid);
+        return !axis.equals("p") || (c.n1 != a.cell.n1 && c.n1 != b.cell.n1);
+    }
+
+    private void add(Line line, double value, List<Run> next) {
+        if (line.points.containsKey(value)) return;
+        Point point = new Point(grid.along(line.base, axis, value));
+        line.points.put(value, point);
+        for (int run = 1; run <= runs; run++) {
+            double[] o = done.get(RunRecord.key(run, point.cell));
+            if (o != null) {
+                point.stats.add(o[0], o[1], o[2], o[3]);
+            } else {
+                next.add(new Run(point, run));
+                line.inFlight++;
+            }
+        }
+    }
+
+    // distance between the mean resultant vectors of two cells
+    private static double change(CellStats a, CellStats b) {
+        if (a.count() == 0 || b.count() == 0) return 0;
+        double ra = a.resultantLength(), rb = b.resultantLength();
+        double dx = ra * Math.cos(a.meanDirection()) - rb * Math.cos(b.meanDirection());
+        double dy = ra * Math.sin(a.meanDirection()) - rb * Math.sin(b.meanDirection());
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,209 @@
+package sim;
+
+/**
+ * 2-d tree over points on a torus, for k-nearest-neighbor queries with
+ * minimal-image distances. Rebuilt once per step from the current positions
+ * (O(N log N), median splits alternating x and y, stored implicitly in one
+ * permuted array); a query costs about O(log N + k).
+ *
+ * Periodicity is handled on the query side: the tree holds the points in
+ * [0, width) x [0, height) only, and a query also searches from those images
+ * of the query point (shifted by +-width, +-height) that are closer to the box
+ * than the current k-th distance. Every neighbor is found at its minimal-image
+ * distance.
+ */
+public class KdTree {
+
+    private static final int LEAF = 8;
+
+    private int n;
+    private int[] perm = new int[0];                         // point index at each tree position
+    private double[] px = new double[0], py = new double[0]; // coordinates in tree order
+    private double width, height;
+
+    /** Per-thread query state: the k best so far as a max-heap on squared distance. */
+    public static final class Search {
+        public final int k;
+        public final int[] idx;
+        public final double[] d2;
+        int size;
+        int exclude;
+        boolean dedupe;
+
+        public Search(int k) {
+            this.k = k;
+            this.idx = new int[k];
+            this.d2 = new double[k];
+        }
+    }
+
+    public void rebuild(double[] xs, double[] ys, int n, double width, double height) {
+        this.n = n;
+        this.width = width;
+        this.height = height;
+        if (perm.length < n) {
+            perm = new int[n];
+            px = new double[n];
+            py = new double[n];
+        }
+        for (int i = 0; i < n; i++) {
+            perm[i] = i;
+            px[i] = xs[i];
+            py[i] = ys[i];
+        }
+        build(0, n, 0);
+    }
+
+    private void build(int lo, int hi, int depth) {
+        if (hi - lo <= LEAF) return;
+        int m = (lo + hi) >>> 1;
+        select(lo, hi - 1, m, (depth & 1) == 0 ? px : py);
+        build(lo, m, depth + 1);
+        build(m + 1, hi, depth + 1);
+    }
+
+    // quickselect: put the m-th smallest of key[lo..hi] at m, smaller ones before it, larger after
+    private void select(int lo, int hi, int m, double[] key) {
+        while (hi > lo) {
+            double pivot = key[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (key[i] < pivot) i++;
+                while (key[j] > pivot) j--;
+                if (i <= j) swap(i++, j--);
+            }
+            if (m <= j) hi = j;
+            else if (m >= i) lo = i;
+            else return;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int p = perm[a];
+        perm[a] = perm[b];
+        perm[b] = p;
+        double t = px[a];
+        px[a] = px[b];
+        px[b] = t;
+        t = py[a];
+        py[a] = py[b];
+        py[b] = t;
+    }
+
+    /**
+     * The min(k, n - 1) points nearest to (qx, qy) other than point exclude,
+     * left in s.idx[0..count) in no particular order (s.d2 holds their squared
+     * distances).
+     * @return count
+     */
+    public int nearest(double qx, double qy, int exclude, Search s) {
+        s.size = 0;
+        s.exclude = exclude;
+        s.dedupe = false;
+        search(0, n, 0, qx, qy, s);
+
+        // images of the query point whose distance to the box could still beat the k-th distance
+        s.dedupe = true;
+        for (int ox = -1; ox <= 1; ox++) {
+            for (int oy = -1; oy <= 1; oy++) {
+                if (ox == 0 && oy == 0) continue;
+                double ix = qx + ox * width, iy = qy + oy * height;
+                double dx = Math.max(0, Math.max(-ix, ix - width));
+                double dy = Math.max(0, Math.max(-iy, iy - height));
+                if (dx * dx + dy * dy < worst(s)) search(0, n, 0, ix, iy, s);
+            }
+        }
+        return s.size;
+    }
+
+    /**
+     * Point self and its nearest neighbors, as indices sorted ascending in out
+     * (the candidate list NeighborGrid.gather would give, so callers visit
+     * neighbors in flock order).
+     * @return number of indices written
+     */
+    public int gather(double qx, double qy, int self, Search s, int[] out) {
+        int count = nearest(qx, qy, self, s);
+        out[0] = self;
+        System.arraycopy(s.idx, 0, out, 1, count);
+        // insertion sort: k is small
+        for (int i = 1; i <= count; i++) {
+            int v = out[i], j = i - 1;
+            while (j >= 0 && out[j] > v) {
+                out[j + 1] = out[j];
+                j--;
+            }
+            out[j + 1] = v;
+        }
+        return count + 1;
+    }
+
+    private void search(int lo, int hi, int depth, double qx, double qy, Search s) {
+        if (hi - lo <= LEAF) {
+            for (int i = lo; i < hi; i++) consider(i, qx, qy, s);
+            return;
+        }
+        int m = (lo + hi) >>> 1;
+        consider(m, qx, qy, s);
+        double diff = (depth & 1) == 0 ? qx - px[m] : qy - py[m];
+        if (diff < 0) {
+            search(lo, m, depth + 1, qx, qy, s);
+            if (diff * diff < worst(s)) search(m + 1, hi, depth + 1, qx, qy, s);
+        } else {
+            search(m + 1, hi, depth + 1, qx, qy, s);
+            if (diff * diff < worst(s)) search(lo, m, depth + 1, qx, qy, s);
+        }
+    }
+
+    private static double worst(Search s) {
+        return s.size < s.k ? Double.POSITIVE_INFINITY : s.d2[0];
+    }
+
+    private void consider(int t, double qx, double qy, Search s) {
+        int p = perm[t];
+        if (p == s.exclude) return;
+        double dx = px[t] - qx, dy = py[t] - qy;
+        double d2 = dx * dx + dy * dy;
+        if (d2 >= worst(s)) return;
+        if (s.dedupe) {
+            // an image search can meet a point already held at its direct distance: keep the shorter one
+            for (int i = 0; i < s.size; i++) {
+                if (s.idx[i] == p) {
+                    if (d2 < s.d2[i]) siftDown(s, i, p, d2);
+                    return;
+                }
+            }
+        }
+        if (s.size < s.k) {
+            // append and sift up
+            int i = s.size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (s.d2[parent] >= d2) break;
+                s.idx[i] = s.idx[parent];
+                s.d2[i] = s.d2[parent];
+                i = parent;
+            }
+            s.idx[i] = p;
+            s.d2[i] = d2;
+        } else {
+            // replace the farthest
+            siftDown(s, 0, p, d2);
+        }
+    }
+
+    // put (p, d2) at heap position i or below, moving larger children up
+    private static void siftDown(Search s, int i, int p, double d2) {
+        while (true) {
+            int c = 2 * i + 1;
+            if (c >= s.size) break;
+            if (c + 1 < s.size && s.d2[c + 1] > s.d2[c]) c++;
+            if (s.d2[c] <= d2) break;
+            s.idx[i] = s.idx[c];
+            s.d2[i] = s.d2[c];
+            i = c;
+        }
+        s.idx[i] = p;
+        s.d2[i] = d2;
+    }
+}
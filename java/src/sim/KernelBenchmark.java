@@ -0,0 +1,178 @@
+package sim;
+
+import org.json.JSONObject;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * Micro/macro benchmarks for the simulation kernel and the sweep runner.
+ * Each case is warmed up, then timed for a fixed wall-clock budget; reported
+ * are throughput (ops/s) and bytes allocated per op by the benchmark thread.
+ *
+ * Usage: java -cp out:lib/* sim.KernelBenchmark [group] [seconds per case] [config]
+ *   group: kernel | measures | run | runner | all (default: all but runner)
+ */
+public class KernelBenchmark {
+
+    private static final int[] N_VALUES = {50, 100, 200, 500, 1000, 2000, 5000};
+    private static final double[] INFORMED_FRACTIONS = {0.0, 0.1, 0.5};
+    private static final int WIDTH = 1400, HEIGHT = 1000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // results are written here so the JIT cannot drop the measured work
+    static volatile Object sink;
+
+    private static double seconds = 2.0;
+
+    public static void main(String[] args) throws Exception {
+        String group = args.length >= 1 ? args[0] : "default";
+        if (args.length >= 2) seconds = Double.parseDouble(args[1]);
+        String configPath = args.length >= 3 ? args[2] : "config/test_run.json";
+
+        System.out.printf("%-48s %14s %14s%n", "benchmark", "ops/s", "B/op");
+        boolean all = group.equals("all") || group.equals("default");
+        if (all || group.equals("kernel")) benchKernel();
+        if (all || group.equals("measures")) benchMeasures();
+        if (all || group.equals("run")) benchRun();
+        if (group.equals("all") || group.equals("runner")) benchRunner(configPath);
+    }
+
+    // Agent.update (one agent) and a full flock step, per engine, N and informed fraction
+    private static void benchKernel() {
+        SplittableRandom rng = new SplittableRandom(1);
+        for (int n : N_VALUES) {
+            for (double p : INFORMED_FRACTIONS) {
+                String cell = "N=" + n + " p=" + p;
+
+                Flock flock = spawn(n, p);
+                int[] next = {0};
+                measure("Agent.update " + cell, () -> {
+                    Agent a = flock.getAgents().get(next[0]++ % n);
+                    a.update(flock.getAgents(), WIDTH, HEIGHT, rng);
+                });
+
+                for (Flock.NeighborMode mode : Flock.NeighborMode.values()) {
+                    Flock objects = spawn(n, p, mode);
+                    objects.setNeighborMode(mode);
+                    measure("Flock.update " + mode + " " + cell,
+                            () -> objects.update(WIDTH, HEIGHT, rng));
+
+                    ArrayFlock arrays = new ArrayFlock(spawn(n, p, mode).getAgents());
+                    arrays.setNeighborMode(mode);
+                    measure("ArrayFlock.update " + mode + " " + cell,
+                            () -> arrays.update(WIDTH, HEIGHT, rng));
+
+                    ArrayFlock fast = new ArrayFlock(spawn(n, p, mode).getAgents());
+                    fast.setNeighborMode(mode);
+                    fast.setKernel(ArrayFlock.Kernel.FAST);
+                    measure("ArrayFlock.update FAST " + mode + " " + cell,
+                            () -> fast.update(WIDTH, HEIGHT, rng));
+
+                    FloatFlock floats = new FloatFlock(spawn(n, p, mode).getAgents());
+                    floats.setNeighborMode(mode);
+                    measure("FloatFlock.update " + mode + " " + cell,
+                            () -> floats.update(WIDTH, HEIGHT, rng));
+                }
+            }
+        }
+    }
+
+    private static void benchMeasures() {
+        SplittableRandom rng = new SplittableRandom(1);
+        for (int n : N_VALUES) {
+            Flock flock = spawn(n, 0.1);
+            for (int t = 0; t < 50; t++) flock.update(WIDTH, HEIGHT, rng);
+            Agent.Vec2 dir = Agent.Vec2.fromAngle(0.5);
+            Agent.Vec2 centroid = flock.calculateGroupCentroid(WIDTH, HEIGHT);
+
+            measure("Flock.calculateGroupCentroid N=" + n,
+                    () -> sink = flock.calculateGroupCentroid(WIDTH, HEIGHT));
+            measure("Flock.computeBoundingBox N=" + n,
+                    () -> sink = flock.computeBoundingBox(dir, centroid, WIDTH, HEIGHT));
+        }
+    }
+
+    // one complete CouzinModel.runSimulation per op
+    private static void benchRun() {
+        for (int n : new int[]{10, 50, 100}) {
+            for (CouzinModel.Engine engine : CouzinModel.Engine.values()) {
+                measure("CouzinModel.runSimulation " + engine + " N=" + n, () -> {
+                    CouzinModel sim = new CouzinModel(n, n / 5, n / 5, 0, Math.toRadians(90), 2000, n, false);
+                    sim.setEngine(engine);
+                    sink = sim.runSimulation();
+                });
+            }
+        }
+    }
+
+    // SimulationRunner end to end on a copy of the config writing to a scratch CSV; op = one run
+    private static void benchRunner(String configPath) throws IOException {
+        JSONObject config = new JSONObject(new String(Files.readAllBytes(Paths.get(configPath))));
+        String scratch = "bench_" + System.nanoTime() + ".csv";
+        config.put("output_csv", scratch);
+        File tmpConfig = File.createTempFile("bench_config", ".json");
+        Files.write(tmpConfig.toPath(), config.toString().getBytes());
+
+        long start = System.nanoTime();
+        SimulationRunner.main(new String[]{tmpConfig.getPath()});
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long runs = Files.lines(Paths.get("data", scratch)).count() - 1; // minus header
+        System.out.printf("%-48s %14.2f %14s%n", "SimulationRunner " + configPath, runs / elapsed, "-");
+
+        Files.deleteIfExists(Paths.get("data", scratch));
+        Files.deleteIfExists(tmpConfig.toPath());
+    }
+
+    // Spawn n agents in the initial box the way CouzinModel does, a fraction p informed towards +x
+    private static Flock spawn(int n, double p) {
+        return spawn(n, p, Flock.NeighborMode.ALL_PAIRS);
+    }
+
+    // as above, with the species table CouzinModel builds for the neighbor mode
+    private static Flock spawn(int n, double p, Flock.NeighborMode mode) {
+        SplittableRandom rng = new SplittableRandom(n);
+        Flock flock = new Flock();
+        int informed = (int) (p * n);
+        Species naive = Species.naive("naive", false), toward = Species.informed("g1", new Agent.Vec2(1, 0), false);
+        if (mode == Flock.NeighborMode.TOPOLOGICAL) {
+            // the k nearest are aligned with and attracted to at any distance
+            naive = naive.with("R_ori", Double.POSITIVE_INFINITY);
+            toward = toward.with("R_ori", Double.POSITIVE_INFINITY);
+        }
+        for (int i = 0; i < n; i++) {
+            double x = WIDTH / 2 - 25 + rng.nextDouble() * 50;
+            double y = HEIGHT / 2 - 25 + rng.nextDouble() * 50;
+            flock.add(new Agent(x, y, i < informed ? 1 : 0, i < informed ? toward : naive, rng));
+        }
+        return flock;
+    }
+
+    private static void measure(String name, Runnable op) {
+        long thread = Thread.currentThread().getId();
+
+        // warmup for half the budget so the measured loop runs compiled code
+        long warmupEnd = System.nanoTime() + (long) (seconds * 0.5e9);
+        while (System.nanoTime() < warmupEnd) op.run();
+
+        long ops = 0;
+        long bytesBefore = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        long now;
+        do {
+            op.run();
+            ops++;
+        } while ((now = System.nanoTime()) < end);
+        long bytes = THREADS.getThreadAllocatedBytes(thread) - bytesBefore;
+
+        double opsPerSec = ops / ((now - start) / 1e9);
+        System.out.printf("%-48s %14.2f %14.1f%n", name, opsPerSec, (double) bytes / ops);
+    }
+}
@@ -0,0 +1,273 @@
+package sim;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Live agent state for a viewer in another process: a memory-mapped ring of
+ * frame slots that the running simulation writes and a viewer (LiveViewer,
+ * processing/live_view) maps and polls at its own frame rate.
+ *
+ * Each slot is a seqlock: the writer makes the slot's sequence odd, writes the
+ * frame, makes it even again and then publishes the frame number in the
+ * header. A reader takes the latest frame, copies its slot and keeps the copy
+ * only if the sequence was even and unchanged across the copy; otherwise it
+ * drops the frame and tries the newest one on its next poll. The writer never
+ * waits for a reader, so a slow viewer loses frames instead of slowing the
+ * simulation, and a reader only sees a torn slot after the writer lapped the
+ * whole ring during its copy.
+ *
+ * One file shows one run at a time: with several runs in flight, the first
+ * one to start takes the view and the next run to start after it ends takes
+ * it over. Flocks larger than the capacity show an evenly spaced subset.
+ *
+ * Layout (little-endian, all offsets 8-aligned):
+ *   0  "CZLIV001"
+ *   8  int32 header bytes      12 int32 slots
+ *   16 int32 slot bytes        20 int32 agent capacity
+ *   24 float32 width           28 float32 height
+ *   32 int64 latest published frame (-1 = none yet)
+ *   slot k at header bytes + k * slot bytes:
+ *   0  int64 sequence (odd while being written)
+ *   8  int64 frame (frame f lives in slot f % slots)
+ *   16 int64 seed              24 int32 step
+ *   28 int32 run time          32 int32 N (flock size)
+ *   36 int32 agents in the frame
+ *   40 agents x (float32 x, float32 y, float32 heading in radians, int32 informed type)
+ */
+public class LiveView {
+
+    public static final byte[] MAGIC = "CZLIV001".getBytes(StandardCharsets.US_ASCII);
+    public static final int HEADER_BYTES = 40;
+    public static final int SLOT_HEADER_BYTES = 40;
+    public static final int AGENT_BYTES = 16;
+    public static final int LATEST = 32;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    // one mapping per file and JVM, shared by all runs that show in it
+    private static final Map<Path, LiveView> OPEN = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final MappedByteBuffer buf;
+    private final int slots, slotBytes, capacity;
+    private final AtomicBoolean taken = new AtomicBoolean();
+    // only touched by the run holding the view
+    private long frame;        // number of the next frame
+    private final long[] seqs; // sequence of each slot, even between writes
+
+    private LiveView(Path file, int capacity, int slots, double width, double height) throws IOException {
+        if (slots < 2) throw new IllegalArgumentException("live_view needs at least 2 slots: " + slots);
+        if (capacity < 1) throw new IllegalArgumentException("live_view max_agents must be > 0: " + capacity);
+        this.file = file;
+        this.slots = slots;
+        this.capacity = capacity;
+        this.slotBytes = SLOT_HEADER_BYTES + AGENT_BYTES * capacity;
+
+        Files.createDirectories(file.getParent());
+        // never truncated: a viewer still mapping the previous file keeps valid (if stale) pages
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size = Math.max(channel.size(), HEADER_BYTES + (long) slots * slotBytes);
+            buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size); // stays valid after close
+        }
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[MAGIC.length];
+        buf.get(0, magic);
+        boolean reused = Arrays.equals(magic, MAGIC);
+        long latest = reused ? (long) LONGS.getAcquire(buf, LATEST) : -1;
+        LONGS.setRelease(buf, LATEST, -1L);
+        // carry on the previous writer's frame numbers and even sequences, so readers never mistake an old slot for a new one
+        frame = Math.max(0, latest + 1);
+        seqs = new long[slots];
+        for (int k = 0; k < slots; k++) {
+            seqs[k] = ((long) LONGS.getOpaque(buf, HEADER_BYTES + k * slotBytes) + 1) & ~1L;
+        }
+        buf.put(MAGIC).putInt(HEADER_BYTES).putInt(slots).putInt(slotBytes).putInt(capacity)
+           .putFloat((float) width).putFloat((float) height);
+    }
+
+    /**
+     * The view mapped at file, created on first use (later calls with the same
+     * file share it and ignore their sizes).
+     * @param capacity agents per frame; larger flocks show an evenly spaced subset
+     * @param slots    frames in the ring
+     */
+    public static LiveView open(Path file, int capacity, int slots, double width, double height) {
+        return OPEN.computeIfAbsent(file.toAbsolutePath().normalize(), f -> {
+            try {
+                return new LiveView(f, capacity, slots, width, height);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * An observer that shows this run every `every` steps, or null while
+     * another run holds the view. The view is released when the observer is closed.
+     */
+    public StepObserver attach(FlockEngine flock, int runTime, int every, long seed) {
+        if (!taken.compareAndSet(false, true)) return null;
+        int n = flock.size();
+        int count = Math.min(capacity, n);
+        int[] agents = new int[count];
+        for (int k = 0; k < count; k++) agents[k] = (int) ((long) k * n / count);
+        int[] informed = new int[count];
+        for (int k = 0; k < count; k++) informed[k] = flock.informed(agents[k]);
+
+        return new StepObserver() {
+            @Override
+            public int every() {
+                return every;
+            }
+
+            @Override
+            public void observe(int step, FlockEngine flock) {
+                publish(step, runTime, n, seed, agents, informed, flock);
+            }
+
+            @Override
+            public void close() {
+                taken.set(false);
+            }
+        };
+    }
+
+    private void publish(int step, int runTime, int n, long seed, int[] agents, int[] informed, FlockEngine flock) {
+        long f = frame++;
+        int slot = (int) (f % slots);
+        long seq = seqs[slot];
+        seqs[slot] = seq + 2;
+        int base = HEADER_BYTES + slot * slotBytes;
+        LONGS.setOpaque(buf, base, seq + 1);
+        VarHandle.storeStoreFence(); // the odd sequence is visible before any frame data
+        buf.putLong(base + 8, f);
+        buf.putLong(base + 16, seed);
+        buf.putInt(base + 24, step);
+        buf.putInt(base + 28, runTime);
+        buf.putInt(base + 32, n);
+        buf.putInt(base + 36, agents.length);
+        int pos = base + SLOT_HEADER_BYTES;
+        for (int k = 0; k < agents.length; k++) {
+            int i = agents[k];
+            buf.putFloat(pos, (float) flock.posX(i));
+            buf.putFloat(pos + 4, (float) flock.posY(i));
+            buf.putFloat(pos + 8, (float) Math.atan2(flock.velY(i), flock.velX(i)));
+            buf.putInt(pos + 12, informed[k]);
+            pos += AGENT_BYTES;
+        }
+        LONGS.setRelease(buf, base, seq + 2);
+        LONGS.setRelease(buf, LATEST, f);
+    }
+
+    /** A consistent copy of one frame, as read by Reader.latest. */
+    public static class Frame {
+        public long frame, seed;
+        public int step, runTime, N, agents;
+        public float width, height;
+        public float[] x = new float[0], y = new float[0], heading = new float[0];
+        public int[] informed = new int[0];
+    }
+
+    /**
+     * Read side of a view file mapped by another process (or this one). Not
+     * thread-safe; one reader per viewer thread.
+     */
+    public static class Reader {
+        private final ByteBuffer buf;
+        private final int headerBytes, slots, slotBytes;
+        private final float width, height;
+        private long last = -1;
+        private long dropped;
+
+        public Reader(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            byte[] magic = new byte[MAGIC.length];
+            buf.get(0, magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException(file + " is not a live view file");
+            headerBytes = buf.getInt(8);
+            slots = buf.getInt(12);
+            slotBytes = buf.getInt(16);
+            width = buf.getFloat(24);
+            height = buf.getFloat(28);
+        }
+
+        /**
+         * Copy the latest published frame into out. Returns false, leaving out
+         * as it may be partly overwritten, when there is no new frame or the
+         * writer overwrote the slot during the copy (the frame is dropped).
+         */
+        public boolean latest(Frame out) {
+            long f = (long) LONGS.getAcquire(buf, LATEST);
+            if (f < 0 || f == last || changed()) return false;
+            int base = headerBytes + (int) (f % slots) * slotBytes;
+            long seq = (long) LONGS.getAcquire(buf, base);
+            if ((seq & 1) != 0 || buf.getLong(base + 8) != f) {
+                dropped++;
+                return false;
+            }
+            out.frame = f;
+            out.seed = buf.getLong(base + 16);
+            out.step = buf.getInt(base + 24);
+            out.runTime = buf.getInt(base + 28);
+            out.N = buf.getInt(base + 32);
+            int count = Math.max(0, Math.min(buf.getInt(base + 36), (slotBytes - SLOT_HEADER_BYTES) / AGENT_BYTES));
+            if (out.x.length < count) {
+                out.x = new float[count];
+                out.y = new float[count];
+                out.heading = new float[count];
+                out.informed = new int[count];
+            }
+            int pos = base + SLOT_HEADER_BYTES;
+            for (int k = 0; k < count; k++) {
+                out.x[k] = buf.getFloat(pos);
+                out.y[k] = buf.getFloat(pos + 4);
+                out.heading[k] = buf.getFloat(pos + 8);
+                out.informed[k] = buf.getInt(pos + 12);
+                pos += AGENT_BYTES;
+            }
+            out.agents = count;
+            out.width = width;
+            out.height = height;
+            VarHandle.loadLoadFence(); // the copy completes before the sequence is checked again
+            if ((long) LONGS.getOpaque(buf, base) != seq) {
+                dropped++;
+                return false;
+            }
+            last = f;
+            return true;
+        }
+
+        /** A new writer laid the file out differently; open a new Reader to follow it. */
+        public boolean changed() {
+            return buf.getInt(12) != slots || buf.getInt(16) != slotBytes
+                || buf.getFloat(24) != width || buf.getFloat(28) != height;
+        }
+
+        /** Frames found torn or overwritten so far. */
+        public long dropped() {
+            return dropped;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package sim;
+
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Draws the flock a running sweep streams into a live view file (see
+ * LiveView), in the colors of the Processing sketch. Polls the file at its
+ * own frame rate and draws the newest complete frame; frames published in
+ * between are skipped, and the simulation never waits for the viewer.
+ *
+ * Usage: java -cp ... sim.LiveViewer [file (default data/live.view)] [fps (default 60)]
+ */
+public class LiveViewer extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Color BACKGROUND = new Color(30, 30, 30);
+    private static final Color[] TYPES = {Color.WHITE, new Color(242, 140, 40), new Color(58, 110, 165)};
+    private static final Color OTHER = new Color(150, 150, 150); // species beyond g1 and g2
+    private static final Polygon AGENT = new Polygon(new int[]{8, -6, -6}, new int[]{0, 4, -4}, 3);
+
+    private final Path file;
+    private LiveView.Reader reader;
+    private final LiveView.Frame frame = new LiveView.Frame();
+    private boolean shown; // frame holds a complete frame
+    private long polls, drawn;
+
+    public LiveViewer(Path file) {
+        this.file = file;
+        setBackground(BACKGROUND);
+        setPreferredSize(new Dimension(1400, 1000));
+    }
+
+    // one poll: keep the newest complete frame, if there is one
+    private void poll() {
+        polls++;
+        try {
+            if (reader == null || reader.changed()) {
+                if (!Files.exists(file)) return;
+                reader = new LiveView.Reader(file);
+            }
+        } catch (IOException e) {
+            reader = null; // not written yet; try again on the next poll
+            return;
+        }
+        if (reader.latest(frame)) {
+            shown = true;
+            drawn++;
+            repaint();
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        if (!shown) {
+            g2.setColor(Color.LIGHT_GRAY);
+            g2.drawString("Waiting for frames in " + file, 10, 20);
+            return;
+        }
+        // fit the world into the panel, keeping its aspect ratio
+        double scale = Math.min(getWidth() / (double) frame.width, getHeight() / (double) frame.height);
+        AffineTransform base = g2.getTransform();
+        g2.scale(scale, scale);
+        for (int k = 0; k < frame.agents; k++) {
+            int type = frame.informed[k];
+            g2.setColor(type >= 0 && type < TYPES.length ? TYPES[type] : OTHER);
+            AffineTransform t = g2.getTransform();
+            g2.translate(frame.x[k], frame.y[k]);
+            g2.rotate(frame.heading[k]);
+            g2.fill(AGENT);
+            g2.setTransform(t);
+        }
+        g2.setTransform(base);
+        g2.setColor(Color.LIGHT_GRAY);
+        g2.drawString(String.format("seed %d  step %d/%d  N=%d (%d shown)  frame %d  drawn %d/%d polls, %d dropped",
+                frame.seed, frame.step, frame.runTime, frame.N, frame.agents, frame.frame,
+                drawn, polls, reader.dropped()), 10, 20);
+    }
+
+    public static void main(String[] args) {
+        Path file = Paths.get(args.length > 0 ? args[0] : "data/live.view");
+        int fps = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        SwingUtilities.invokeLater(() -> {
+            LiveViewer viewer = new LiveViewer(file);
+            JFrame window = new JFrame("Couzin live view: " + file);
+            window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            window.add(viewer);
+            window.pack();
+            window.setVisible(true);
+            new Timer(1000 / fps, e -> viewer.poll()).start();
+        });
+    }
+}
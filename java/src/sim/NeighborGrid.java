@@ -0,0 +1,93 @@
+package sim;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid (cell list) over a torus, used to find candidate neighbors
+ * without scanning the whole flock. Rebuilt once per step from the current
+ * positions; a query returns every agent in the 3x3 block of cells around
+ * a point, so any agent closer than the cell size is always included.
+ */
+public class NeighborGrid {
+
+    private int cols, rows;
+    private double cellW, cellH;
+
+    // agents sorted by cell: items[cellStart[c] .. cellStart[c+1]) belong to cell c
+    private int[] cellStart = new int[0];
+    private int[] items = new int[0];
+    private int[] cellOf = new int[0];
+
+    /**
+     * Bucket n points into cells at least minCellSize wide.
+     */
+    public void rebuild(double[] xs, double[] ys, int n, double minCellSize, double width, double height) {
+        cols = Math.max(1, (int) (width / minCellSize));
+        rows = Math.max(1, (int) (height / minCellSize));
+        cellW = width / cols;
+        cellH = height / rows;
+
+        int numCells = cols * rows;
+        if (cellStart.length < numCells + 1) cellStart = new int[numCells + 1];
+        if (items.length < n) {
+            items = new int[n];
+            cellOf = new int[n];
+        }
+        Arrays.fill(cellStart, 0, numCells + 1, 0);
+
+        // counting sort by cell; agents stay in index order within a cell
+        for (int i = 0; i < n; i++) {
+            int c = cellIndex(xs[i], ys[i]);
+            cellOf[i] = c;
+            cellStart[c + 1]++;
+        }
+        for (int c = 0; c < numCells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] fill = Arrays.copyOf(cellStart, numCells);
+        for (int i = 0; i < n; i++) {
+            items[fill[cellOf[i]]++] = i;
+        }
+    }
+
+    /**
+     * Collect the indices of all agents in the cells around (x, y) into out,
+     * sorted ascending so callers visit neighbors in flock order.
+     * @return number of indices written
+     */
+    public int gather(double x, double y, int[] out) {
+        int cx = column(x);
+        int cy = row(y);
+        int count = 0;
+
+        // with fewer than three cells along an axis the 3x3 block would visit a cell twice
+        int dxFrom = cols >= 3 ? -1 : 0, dxTo = cols >= 2 ? 1 : 0;
+        int dyFrom = rows >= 3 ? -1 : 0, dyTo = rows >= 2 ? 1 : 0;
+
+        for (int dy = dyFrom; dy <= dyTo; dy++) {
+            int r = Math.floorMod(cy + dy, rows);
+            for (int dx = dxFrom; dx <= dxTo; dx++) {
+                int c = r * cols + Math.floorMod(cx + dx, cols);
+                for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                    out[count++] = items[k];
+                }
+            }
+        }
+        Arrays.sort(out, 0, count);
+        return count;
+    }
+
+    private int cellIndex(double x, double y) {
+        return row(y) * cols + column(x);
+    }
+
+    private int column(double x) {
+        int c = (int) (x / cellW);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    private int row(double y) {
+        int r = (int) (y / cellH);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+}
@@ -0,0 +1,178 @@
+package sim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Order parameters of the flock every k steps, kept in memory and written as
+ * one compact file per run when the run ends:
+ *
+ *   polarization    |mean heading|, 1 = all agents aligned
+ *   milling         mean (r - c) x u over the radius of gyration: +-1 for a
+ *                   rigid mill (sign = sense of rotation), about 0 otherwise
+ *   gyration_radius sqrt(mean |r - c|^2), group cohesion
+ *   nn_distance     mean distance to the nearest neighbor
+ *   aligned_g1/g2   fraction of informed agents of type 1/2 heading within
+ *                   align_deg of their preferred direction (NaN without such agents)
+ *
+ * Everything but nn_distance comes out of one pass over the agents. Positions
+ * r are taken as minimal images relative to agent 0, which unwraps the
+ * torus for any group smaller than half the box, and c is their mean, so the
+ * sums of r, |r|^2 and r x u are all that is needed. nn_distance needs a pass
+ * over agent pairs (squared distances, N^2/2 per observation).
+ *
+ * Layout (little-endian):
+ *   0  "CZOBS001"
+ *   8  int32 header bytes      12 int32 rows
+ *   16 int32 columns           20 int32 every (steps between rows)
+ *   24 int32 N                 28 float32 align_deg
+ *   32 int64 seed
+ *   40 columns x 16-byte ASCII names (zero-padded), then rows of float32[columns]
+ * See analysis/python/load_observables.py.
+ */
+public class ObservableSeries implements StepObserver {
+
+    public static final byte[] MAGIC = "CZOBS001".getBytes(StandardCharsets.US_ASCII);
+    public static final String[] COLUMNS = {
+            "step", "polarization", "milling", "gyration_radius", "nn_distance", "aligned_g1", "aligned_g2"};
+
+    private final Path file;
+    private final int every;
+    private final long seed;
+    private final double width, height;
+    private final double g1x, g1y, g2x, g2y;
+    private final double alignDeg, cosAlign;
+
+    private final float[] rows;
+    private int count;
+    private double[] nearest2 = new double[0]; // squared nearest-neighbor distance per agent
+    private int n;
+
+    public ObservableSeries(Path file, int runTime, int every, double alignDeg, Agent.Vec2 g1, Agent.Vec2 g2,
+                            long seed, double width, double height) {
+        this.file = file;
+        this.every = every;
+        this.seed = seed;
+        this.width = width;
+        this.height = height;
+        this.g1x = g1.x;
+        this.g1y = g1.y;
+        this.g2x = g2.x;
+        this.g2y = g2.y;
+        this.alignDeg = alignDeg;
+        this.cosAlign = Math.cos(Math.toRadians(alignDeg));
+        this.rows = new float[(1 + runTime / every) * COLUMNS.length];
+    }
+
+    @Override
+    public int every() {
+        return every;
+    }
+
+    @Override
+    public void observe(int step, FlockEngine flock) {
+        if ((count + 1) * COLUMNS.length > rows.length) return;
+        n = flock.size();
+        double halfW = width / 2.0, halfH = height / 2.0;
+        double x0 = flock.posX(0), y0 = flock.posY(0);
+
+        double sumUx = 0, sumUy = 0;         // headings
+        double sumRx = 0, sumRy = 0, sumR2 = 0; // unwrapped positions
+        double sumCross = 0;                 // r x u
+        int informed1 = 0, aligned1 = 0, informed2 = 0, aligned2 = 0;
+
+        for (int i = 0; i < n; i++) {
+            double vx = flock.velX(i), vy = flock.velY(i);
+            double len = Math.sqrt(vx * vx + vy * vy);
+            double ux = len == 0 ? 0 : vx / len, uy = len == 0 ? 0 : vy / len;
+            double rx = periodic(flock.posX(i) - x0, width, halfW);
+            double ry = periodic(flock.posY(i) - y0, height, halfH);
+
+            sumUx += ux;
+            sumUy += uy;
+            sumRx += rx;
+            sumRy += ry;
+            sumR2 += rx * rx + ry * ry;
+            sumCross += rx * uy - ry * ux;
+
+            int type = flock.informed(i);
+            if (type == 1) {
+                informed1++;
+                if (ux * g1x + uy * g1y > cosAlign) aligned1++;
+            } else if (type == 2) {
+                informed2++;
+                if (ux * g2x + uy * g2y > cosAlign) aligned2++;
+            }
+        }
+
+        double cx = sumRx / n, cy = sumRy / n;
+        double gyration = Math.sqrt(Math.max(0, sumR2 / n - cx * cx - cy * cy));
+        // mean (r - c) x u = (sum r x u - c x sum u) / n
+        double angular = (sumCross - (cx * sumUy - cy * sumUx)) / n;
+
+        int base = count * COLUMNS.length;
+        rows[base] = step;
+        rows[base + 1] = (float) (Math.sqrt(sumUx * sumUx + sumUy * sumUy) / n);
+        rows[base + 2] = (float) (gyration > 0 ? angular / gyration : 0);
+        rows[base + 3] = (float) gyration;
+        rows[base + 4] = (float) nearestNeighborDistance(flock, halfW, halfH);
+        rows[base + 5] = informed1 == 0 ? Float.NaN : (float) aligned1 / informed1;
+        rows[base + 6] = informed2 == 0 ? Float.NaN : (float) aligned2 / informed2;
+        count++;
+    }
+
+    private double nearestNeighborDistance(FlockEngine flock, double halfW, double halfH) {
+        if (n < 2) return Double.NaN;
+        if (nearest2.length < n) nearest2 = new double[n];
+        Arrays.fill(nearest2, 0, n, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < n; i++) {
+            double xi = flock.posX(i), yi = flock.posY(i);
+            double best = nearest2[i];
+            for (int j = i + 1; j < n; j++) {
+                double dx = periodic(flock.posX(j) - xi, width, halfW);
+                double dy = periodic(flock.posY(j) - yi, height, halfH);
+                double d2 = dx * dx + dy * dy;
+                if (d2 < best) best = d2;
+                if (d2 < nearest2[j]) nearest2[j] = d2;
+            }
+            nearest2[i] = best;
+        }
+        double sum = 0;
+        for (int i = 0; i < n; i++) sum += Math.sqrt(nearest2[i]);
+        return sum / n;
+    }
+
+    private static double periodic(double d, double size, double half) {
+        if (d > half) return d - size;
+        if (d < -half) return d + size;
+        return d;
+    }
+
+    @Override
+    public void close() throws IOException {
+        int columns = COLUMNS.length;
+        int headerBytes = 40 + 16 * columns;
+        ByteBuffer buf = ByteBuffer.allocate(headerBytes + 4 * count * columns).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put(MAGIC).putInt(headerBytes).putInt(count).putInt(columns).putInt(every)
+           .putInt(n).putFloat((float) alignDeg).putLong(seed);
+        for (String c : COLUMNS) {
+            byte[] name = Arrays.copyOf(c.getBytes(StandardCharsets.US_ASCII), 16);
+            buf.put(name);
+        }
+        for (int i = 0; i < count * columns; i++) buf.putFloat(rows[i]);
+        buf.flip();
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) channel.write(buf);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package sim;
+
+/**
+ * Neighbor scan of ArrayFlock's FAST kernel: the zone sums of one agent over
+ * a set of candidate neighbors, with squared distances and no branches per
+ * pair, so the loop maps onto SIMD lanes.
+ *
+ * Every candidate is classified by its squared minimal-image distance d2:
+ * repulsion zone (d2 < rRep2) or orientation/attraction zone
+ * (rRep2 <= d2 < rOri2). Pairs at d2 == 0 (the agent itself) contribute
+ * zero vectors but are still counted; the caller corrects for itself.
+ */
+public interface PairKernel {
+
+    // layout of the acc array
+    int REP_X = 0, REP_Y = 1, REP_COUNT = 2;
+    int ATT_X = 3, ATT_Y = 4, ORI_X = 5, ORI_Y = 6, SOCIAL_COUNT = 7;
+    int ACC_SIZE = 8;
+
+    /**
+     * Overwrite acc with the sums over neighbors idx[0..count) (or 0..count
+     * when idx is null): repulsion as the sum of unit vectors away from the
+     * neighbors, attraction as the sum of unit vectors towards them and
+     * orientation as the sum of their headings (vx, vy) * invSpeed.
+     */
+    void accumulate(double px, double py, double rRep2, double rOri2,
+                    double[] x, double[] y, double[] vx, double[] vy, double[] invSpeed,
+                    int[] idx, int count, double width, double height, double[] acc);
+
+    /**
+     * The SIMD kernel (sim.VectorPairKernel, built from java/simd with
+     * --add-modules jdk.incubator.vector) when it is on the class path and the
+     * module is loaded, the scalar kernel otherwise. -Dsim.simd=false forces
+     * the scalar kernel.
+     */
+    static PairKernel preferred() {
+        return Preferred.KERNEL;
+    }
+
+    final class Preferred {
+        static final PairKernel KERNEL = SimdKernels.load("sim.VectorPairKernel", new ScalarPairKernel());
+
+        private Preferred() {
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package sim;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The parameter cells of a sweep, expanded lazily from the configured axes. Cells are
+ * produced one at a time as the runner asks for them, so a large grid costs
+ * nothing up front.
+ *
+ * Axes, outermost first: N (largest first, so the longest runs do not end up
+ * in the tail of the sweep), then either p or n1 x n2, then angle1, angle2,
+ * then any optional per-agent parameter axes (EXTRA_AXES, e.g. "speed_values").
+ */
+public class ParameterGrid implements Iterable<ParameterGrid.Cell> {
+
+    /** Agent parameters that can be swept with a "<name>_values" array; see CouzinModel.setAgentParameter. */
+    public static final String[] EXTRA_AXES = {"speed", "maxTurn", "R_rep", "R_ori", "w", "w_max"};
+
+    /** One point of the grid. */
+    public static class Cell {
+        public final int N;
+        public final double p;
+        public final int n1, n2;
+        public final double angle1Deg, angle2Deg;
+        public final String[] extraNames; // shared by all cells of a grid
+        public final double[] extras;
+
+        public Cell(int N, double p, int n1, int n2, double angle1Deg, double angle2Deg,
+                    String[] extraNames, double[] extras) {
+            this.N = N;
+            this.p = p;
+            this.n1 = n1;
+            this.n2 = n2;
+            this.angle1Deg = angle1Deg;
+            this.angle2Deg = angle2Deg;
+            this.extraNames = extraNames;
+            this.extras = extras;
+        }
+    }
+
+    private final boolean byProportion; // p axis instead of n1 x n2
+    private final double[][] axes;
+    private final String[] extraNames;
+    private final int firstExtra;
+
+    private ParameterGrid(boolean byProportion, List<double[]> axes, String[] extraNames) {
+        this.byProportion = byProportion;
+        this.axes = axes.toArray(new double[0][]);
+        this.extraNames = extraNames;
+        this.firstExtra = this.axes.length - extraNames.length;
+    }
+
+    /**
+     * Mode 1 (more than one p value): n1 = p*N, n2 = 0. Mode 2: n1_values x n2_values.
+     */
+    public static ParameterGrid fromConfig(JSONObject config) {
+        List<double[]> axes = new ArrayList<>();
+
+        double[] N = values(config.getJSONArray("N_values"));
+        Arrays.sort(N);
+        for (int i = 0; i < N.length / 2; i++) {
+            double t = N[i];
+            N[i] = N[N.length - 1 - i];
+            N[N.length - 1 - i] = t;
+        }
+        axes.add(N);
+
+        JSONArray p = config.optJSONArray("p_values");
+        boolean byProportion = p != null && p.length() > 1;
+        if (byProportion) {
+            axes.add(values(p));
+        } else {
+            axes.add(values(config.getJSONArray("n1_values")));
+            axes.add(values(config.getJSONArray("n2_values")));
+        }
+        axes.add(values(config.getJSONArray("angle1_deg_values")));
+        axes.add(values(config.getJSONArray("angle2_deg_values")));
+
+        List<String> extras = new ArrayList<>();
+        for (String name : EXTRA_AXES) {
+            JSONArray v = config.optJSONArray(name + "_values");
+            if (v != null) {
+                extras.add(name);
+                axes.add(values(v));
+            }
+        }
+        return new ParameterGrid(byProportion, axes, extras.toArray(new String[0]));
+    }
+
+    /** Names of the swept agent parameters, in column order. */
+    public String[] extraNames() {
+        return extraNames;
+    }
+
+    /** Axes a sweep can be refined along (see GridRefiner): "p" (with p_values), "angle1_deg", "angle2_deg". */
+    public static final String[] REFINABLE_AXES = {"p", "angle1_deg", "angle2_deg"};
+
+    /** Configured values of a refinable axis, in config order. */
+    public double[] values(String axis) {
+        return axes[axisIndex(axis)].clone();
+    }
+
+    /**
+     * This grid with the axis held at its first value: one cell per line of
+     * cells that differ only along the axis (see along).
+     */
+    public ParameterGrid lines(String axis) {
+        List<double[]> fixed = new ArrayList<>(Arrays.asList(axes));
+        int a = axisIndex(axis);
+        fixed.set(a, new double[]{axes[a][0]});
+        return new ParameterGrid(byProportion, fixed, extraNames);
+    }
+
+    /** The cell of line at the given value of the axis; n1 follows p as in the grid. */
+    public Cell along(Cell line, String axis, double value) {
+        switch (axis) {
+            case "p":
+                return new Cell(line.N, value, (int) (value * line.N), 0, line.angle1Deg, line.angle2Deg,
+                        line.extraNames, line.extras);
+            case "angle1_deg":
+                return new Cell(line.N, line.p, line.n1, line.n2, value, line.angle2Deg, line.extraNames, line.extras);
+            default:
+                return new Cell(line.N, line.p, line.n1, line.n2, line.angle1Deg, value, line.extraNames, line.extras);
+        }
+    }
+
+    private int axisIndex(String axis) {
+        int next = byProportion ? 2 : 3;
+        switch (axis) {
+            case "p":
+                if (!byProportion) throw new IllegalArgumentException("refining p needs more than one p_values");
+                return 1;
+            case "angle1_deg":
+                return next;
+            case "angle2_deg":
+                return next + 1;
+            default:
+                throw new IllegalArgumentException("Cannot refine along " + axis + "; use one of "
+                        + String.join(", ", REFINABLE_AXES));
+        }
+    }
+
+    /** Number of cells. */
+    public long size() {
+        long size = 1;
+        for (double[] axis : axes) size *= axis.length;
+        return size;
+    }
+
+    @Override
+    public Iterator<Cell> iterator() {
+        return new Iterator<Cell>() {
+            private final int[] index = new int[axes.length];
+            private boolean more = size() > 0;
+
+            @Override
+            public boolean hasNext() {
+                return more;
+            }
+
+            @Override
+            public Cell next() {
+                if (!more) throw new NoSuchElementException();
+                double[] point = new double[axes.length];
+                for (int a = 0; a < axes.length; a++) point[a] = axes[a][index[a]];
+
+                // odometer: the last axis turns fastest
+                int a = axes.length - 1;
+                while (a >= 0 && ++index[a] == axes[a].length) {
+                    index[a] = 0;
+                    a--;
+                }
+                more = a >= 0;
+                return toCell(point);
+            }
+        };
+    }
+
+    private Cell toCell(double[] point) {
+        int N = (int) point[0];
+        double p;
+        int n1, n2, next;
+        if (byProportion) {
+            p = point[1];
+            n1 = (int) (p * N); // number of informed agents of type 1
+            n2 = 0;
+            next = 2;
+        } else {
+            n1 = (int) point[1];
+            n2 = (int) point[2];
+            p = (double) n1 / N; // for logging
+            next = 3;
+        }
+        double[] extras = Arrays.copyOfRange(point, firstExtra, point.length);
+        return new Cell(N, p, n1, n2, point[next], point[next + 1], extraNames, extras);
+    }
+
+    private static double[] values(JSONArray array) {
+        double[] v = new double[array.length()];
+        for (int i = 0; i < v.length; i++) v[i] = array.getDouble(i);
+        return v;
+    }
+}
@@ -0,0 +1,88 @@
+package sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming quantiles in bounded memory (a KLL-style compactor stack).
+ * Values go into level 0; when a level holds k values it is sorted and every
+ * other value moves up one level with twice the weight, alternating between
+ * the odd and the even positions so the rounding does not drift one way.
+ * Memory is about k * log2(n / k) values and the rank error a few n / k;
+ * until k values have been added the sketch is exact.
+ */
+public class QuantileSketch {
+
+    private final int k;
+    private final List<double[]> levels = new ArrayList<>(); // level h holds values of weight 2^h
+    private final List<Integer> sizes = new ArrayList<>();
+    private final List<Boolean> takeOdd = new ArrayList<>();
+    private long count;
+
+    public QuantileSketch(int k) {
+        if (k < 2 || k % 2 != 0) throw new IllegalArgumentException("sketch size must be even and >= 2: " + k);
+        this.k = k;
+    }
+
+    public void add(double value) {
+        count++;
+        push(0, value);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    private void push(int level, double value) {
+        if (level == levels.size()) {
+            levels.add(new double[k]);
+            sizes.add(0);
+            takeOdd.add(false);
+        }
+        double[] buf = levels.get(level);
+        int size = sizes.get(level);
+        buf[size++] = value;
+        sizes.set(level, size);
+        if (size == k) compact(level);
+    }
+
+    private void compact(int level) {
+        double[] buf = levels.get(level);
+        Arrays.sort(buf);
+        boolean odd = takeOdd.get(level);
+        takeOdd.set(level, !odd);
+        sizes.set(level, 0);
+        for (int i = odd ? 1 : 0; i < k; i += 2) push(level + 1, buf[i]);
+    }
+
+    /**
+     * The smallest retained value with at least a fraction q of the weight at
+     * or below it (the lower q-quantile; exact while count <= k). NaN when empty.
+     */
+    public double quantile(double q) {
+        if (count == 0) return Double.NaN;
+        int total = 0;
+        for (int s : sizes) total += s;
+        double[] values = new double[total];
+        long[] weights = new long[total];
+        Integer[] order = new Integer[total];
+        int j = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            double[] buf = levels.get(h);
+            for (int i = 0; i < sizes.get(h); i++, j++) {
+                values[j] = buf[i];
+                weights[j] = 1L << h;
+                order[j] = j;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double target = q * count;
+        long seen = 0;
+        for (int i : order) {
+            seen += weights[i];
+            if (seen >= target) return values[i];
+        }
+        return values[order[total - 1]];
+    }
+}
@@ -0,0 +1,194 @@
+package sim;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.json.JSONObject;
+
+/**
+ * Persistent cache of run results shared by all sweeps on this machine.
+ * Results are content-addressed: the file of a run is named by the SHA-256
+ * of CouzinModel.parameterKey (model version, all parameters, engine
+ * numerics and seed), so any config that asks for the same run with the
+ * same base seed finds it, whichever grid it came from.
+ *
+ * Layout: dir/ab/abcdef....res, two lines: the parameter key (checked on
+ * every read, so a collision or a mangled file is a miss) and the result
+ * (direction x, y and bounding box, as Double.toString). A hit touches the
+ * file's modification time; trim() deletes the least recently used files
+ * until the directory fits in max_mb.
+ *
+ * With verify > 0 that fraction of hits is simulated anyway and compared
+ * bit for bit; a mismatch means the entry is stale (the model changed without
+ * a VERSION bump) and is reported and overwritten.
+ *
+ * Config: "result_cache": {"dir": "data/cache", "max_mb": 512, "verify": 0.01}
+ */
+public class ResultCache {
+
+    private final Path dir;
+    private final long maxBytes;
+    private final double verify;
+
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+    private final AtomicLong verified = new AtomicLong(), stale = new AtomicLong();
+
+    public ResultCache(Path dir, long maxBytes, double verify) {
+        if (maxBytes <= 0 || verify < 0 || verify > 1) {
+            throw new IllegalArgumentException("result_cache needs max_mb > 0 and verify in [0, 1]");
+        }
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.verify = verify;
+    }
+
+    /** The cache for the config's "result_cache" object, or null when caching is off. */
+    public static ResultCache fromConfig(JSONObject config) {
+        JSONObject c = config.optJSONObject("result_cache");
+        if (c == null) return null;
+        return new ResultCache(Paths.get(c.optString("dir", "data/cache")),
+                (long) (c.optDouble("max_mb", 512) * 1024 * 1024), c.optDouble("verify", 0));
+    }
+
+    /**
+     * The cached result for key, or null on a miss. A hit that is picked for
+     * verification is also returned as null and counted when its recomputed
+     * result comes back through store.
+     */
+    public CouzinModel.SimulationResult lookup(String key) {
+        Path file = file(key);
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        CouzinModel.SimulationResult cached = parse(key, lines);
+        if (cached == null || (verify > 0 && ThreadLocalRandom.current().nextDouble() < verify)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // only the eviction order suffers
+        }
+        hits.incrementAndGet();
+        return cached;
+    }
+
+    /** Add a computed result; if the key is already cached, compare the two first. */
+    public void store(String key, CouzinModel.SimulationResult result) {
+        Path file = file(key);
+        try {
+            if (Files.exists(file)) {
+                CouzinModel.SimulationResult cached = parse(key, Files.readAllLines(file, StandardCharsets.UTF_8));
+                if (cached != null) {
+                    verified.incrementAndGet();
+                    if (same(cached, result)) return;
+                    stale.incrementAndGet();
+                    System.out.println("Stale result cache entry " + file.getFileName() + " (" + key + "): cached "
+                            + format(cached) + ", recomputed " + format(result));
+                }
+            }
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "res", ".tmp");
+            Files.write(tmp, (key + "\n" + format(result) + "\n").getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Delete least recently used entries until the cache fits in max_mb.
+     * @return the number of entries deleted
+     */
+    public int trim() throws IOException {
+        if (!Files.isDirectory(dir)) return 0;
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> s = Files.walk(dir, 2)) {
+            s.filter(p -> p.toString().endsWith(".res")).forEach(files::add);
+        }
+        long total = 0;
+        List<long[]> info = new ArrayList<>(); // {modified, size, index}
+        for (int i = 0; i < files.size(); i++) {
+            long size = Files.size(files.get(i));
+            total += size;
+            info.add(new long[]{Files.getLastModifiedTime(files.get(i)).toMillis(), size, i});
+        }
+        info.sort(Comparator.comparingLong(a -> a[0]));
+        int deleted = 0;
+        for (long[] f : info) {
+            if (total <= maxBytes) break;
+            Files.deleteIfExists(files.get((int) f[2]));
+            total -= f[1];
+            deleted++;
+        }
+        return deleted;
+    }
+
+    public String summary() {
+        return "Result cache: " + hits.get() + " hits, " + misses.get() + " computed, " + verified.get()
+                + " verified, " + stale.get() + " stale";
+    }
+
+    private Path file(String key) {
+        String hash = sha256(key);
+        return dir.resolve(hash.substring(0, 2)).resolve(hash + ".res");
+    }
+
+    // null unless the file holds exactly this key and a well-formed result
+    private static CouzinModel.SimulationResult parse(String key, List<String> lines) {
+        if (lines.size() < 2 || !lines.get(0).equals(key)) return null;
+        String[] f = lines.get(1).split(" ");
+        if (f.length != 4) return null;
+        try {
+            return new CouzinModel.SimulationResult(
+                    new Agent.Vec2(Double.parseDouble(f[0]), Double.parseDouble(f[1])),
+                    new double[]{Double.parseDouble(f[2]), Double.parseDouble(f[3])});
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String format(CouzinModel.SimulationResult r) {
+        return r.groupDirection.x + " " + r.groupDirection.y + " " + r.boundingBox[0] + " " + r.boundingBox[1];
+    }
+
+    private static boolean same(CouzinModel.SimulationResult a, CouzinModel.SimulationResult b) {
+        return Double.compare(a.groupDirection.x, b.groupDirection.x) == 0
+                && Double.compare(a.groupDirection.y, b.groupDirection.y) == 0
+                && Double.compare(a.boundingBox[0], b.boundingBox[0]) == 0
+                && Double.compare(a.boundingBox[1], b.boundingBox[1]) == 0;
+    }
+
+    static String sha256(String s) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(64);
+            for (byte b : d) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE has SHA-256
+        }
+    }
+}
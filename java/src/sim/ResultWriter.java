@@ -0,0 +1,154 @@
+package sim;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous result writer. Simulation threads hand finished runs to a
+ * bounded queue and return immediately; a dedicated thread formats and
+ * writes them in batches, flushing when flushRows records are pending or
+ * flushMillis have passed since the last flush. A full queue blocks the
+ * producers, so a slow disk throttles the sweep instead of growing memory.
+ */
+public class ResultWriter {
+
+    /** Which files the results go to. */
+    public enum Format {
+        CSV,    // the usual CSV file
+        BINARY, // fixed-width records only (BinaryResultWriter), next to where the CSV would be
+        BOTH,
+        NONE    // no raw rows, only the per-cell summary (SweepSummary)
+    }
+
+    private static final RunRecord END = new RunRecord(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, new double[0]);
+
+    private final BlockingQueue<RunRecord> queue;
+    private final CsvWriter csv;
+    private final BinaryResultWriter binary;
+    private final int flushRows;
+    private final long flushMillis;
+    private final Thread thread;
+    private volatile IOException failure;
+    private volatile Checkpoint checkpoint; // committed after every written batch, if set
+    private volatile SweepSummary summary;  // fed every written record on the writer thread, if set
+
+    /**
+     * @param csvPath path of the CSV output; the binary file uses the same name with .bin
+     */
+    public ResultWriter(String csvPath, String[] header, Format format, int queueCapacity,
+                        int flushRows, long flushMillis) throws IOException {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flushRows = flushRows;
+        this.flushMillis = flushMillis;
+
+        if (format == Format.CSV || format == Format.BOTH) {
+            csv = new CsvWriter(csvPath);
+            csv.writeHeader(header);
+        } else {
+            csv = null;
+        }
+        binary = format == Format.BINARY || format == Format.BOTH ? new BinaryResultWriter(Paths.get(binaryPath(csvPath)), header) : null;
+
+        thread = new Thread(this::drain, "result-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static String binaryPath(String csvPath) {
+        return (csvPath.endsWith(".csv") ? csvPath.substring(0, csvPath.length() - 4) : csvPath) + ".bin";
+    }
+
+    /** Journal each written batch so an interrupted sweep can resume (see Checkpoint). */
+    public void setCheckpoint(Checkpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Fold every record into the summary as it is written; the summary is
+     * only touched by the writer thread until close() returns.
+     */
+    public void setSummary(SweepSummary summary) {
+        this.summary = summary;
+    }
+
+    /** Queue one result; blocks while the queue is full. */
+    public void submit(RunRecord record) throws InterruptedException {
+        queue.put(record);
+    }
+
+    /** Records waiting to be written. */
+    public int backlog() {
+        return queue.size();
+    }
+
+    /** Write everything still queued and close the files. */
+    public void close() throws IOException {
+        try {
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (csv != null) csv.close();
+        if (binary != null) binary.close();
+        if (failure != null) throw failure;
+    }
+
+    private void drain() {
+        List<RunRecord> batch = new ArrayList<>(flushRows);
+        long lastFlush = System.currentTimeMillis();
+        boolean done = false;
+        while (!done) {
+            try {
+                long wait = Math.max(1, flushMillis - (System.currentTimeMillis() - lastFlush));
+                RunRecord r = queue.poll(wait, TimeUnit.MILLISECONDS);
+                if (r == END) {
+                    done = true;
+                } else if (r != null) {
+                    batch.add(r);
+                    queue.drainTo(batch, flushRows - batch.size());
+                    if (batch.contains(END)) {
+                        batch.remove(END);
+                        done = true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                done = true;
+            }
+
+            boolean due = batch.size() >= flushRows || System.currentTimeMillis() - lastFlush >= flushMillis;
+            if (!batch.isEmpty() && (due || done)) {
+                write(batch);
+                batch.clear();
+                lastFlush = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private void write(List<RunRecord> batch) {
+        try {
+            if (csv != null) {
+                List<String> lines = new ArrayList<>(batch.size());
+                for (RunRecord r : batch) lines.add(r.toCsv());
+                csv.writeLines(lines);
+            }
+            if (binary != null) binary.write(batch);
+            if (summary != null) {
+                for (RunRecord r : batch) summary.add(r);
+            }
+            if (checkpoint != null) checkpoint.commit();
+        } catch (IOException e) {
+            failure = e;
+            e.printStackTrace();
+        } catch (RuntimeException e) {
+            // keep draining: a dead writer thread would block producers in submit once the queue fills
+            failure = new IOException("result writer failed", e);
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package sim;
+
+/**
+ * One finished run: its parameter cell, seed and measured outputs.
+ * Columns are in output order (see SimulationRunner.HEADER), followed by
+ * the values of any swept agent parameters.
+ */
+public class RunRecord {
+    public final int run;
+    public final int N;
+    public final double p;
+    public final int n1, n2;
+    public final double angle1Deg, angle2Deg;
+    public final double dirX, dirY;
+    public final double bboxX, bboxY;
+    public final long seed;
+    public final double[] extras; // ParameterGrid.Cell.extras
+
+    public RunRecord(int run, int N, double p, int n1, int n2, double angle1Deg, double angle2Deg,
+                     double dirX, double dirY, double bboxX, double bboxY, long seed, double[] extras) {
+        this.run = run;
+        this.N = N;
+        this.p = p;
+        this.n1 = n1;
+        this.n2 = n2;
+        this.angle1Deg = angle1Deg;
+        this.angle2Deg = angle2Deg;
+        this.dirX = dirX;
+        this.dirY = dirY;
+        this.bboxX = bboxX;
+        this.bboxY = bboxY;
+        this.seed = seed;
+        this.extras = extras;
+    }
+
+    public RunRecord(int run, ParameterGrid.Cell cell, CouzinModel.SimulationResult result, long seed) {
+        this(run, cell.N, cell.p, cell.n1, cell.n2, loggedAngle(cell.angle1Deg), loggedAngle(cell.angle2Deg),
+                result.groupDirection.x, result.groupDirection.y,
+                result.boundingBox[0], result.boundingBox[1], seed, cell.extras);
+    }
+
+    /** Angles have always been logged converted to radians and back; keep that so outputs stay comparable. */
+    public static double loggedAngle(double deg) {
+        return Math.toDegrees(Math.toRadians(deg));
+    }
+
+    /**
+     * Identity of a run within a sweep, formatted like the CSV columns so keys
+     * read back from an output file match keys of planned runs.
+     */
+    public static String key(int run, int N, double p, int n1, int n2, double angle1Deg, double angle2Deg, double[] extras) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(N).append(',').append(p).append(',').append(n1).append(',').append(n2).append(',')
+          .append(angle1Deg).append(',').append(angle2Deg);
+        for (double e : extras) sb.append(',').append(e);
+        return sb.append(',').append(run).toString();
+    }
+
+    public static String key(int run, ParameterGrid.Cell cell) {
+        return key(run, cell.N, cell.p, cell.n1, cell.n2, loggedAngle(cell.angle1Deg), loggedAngle(cell.angle2Deg), cell.extras);
+    }
+
+    public String key() {
+        return key(run, N, p, n1, n2, angle1Deg, angle2Deg, extras);
+    }
+
+    /** CSV line, formatted exactly like CsvWriter.writeRow would. */
+    public String toCsv() {
+        StringBuilder sb = new StringBuilder(160);
+        sb.append(run).append(',')
+          .append(N).append(',')
+          .append(p).append(',')
+          .append(n1).append(',')
+          .append(n2).append(',')
+          .append(angle1Deg).append(',')
+          .append(angle2Deg).append(',')
+          .append(dirX).append(',')
+          .append(dirY).append(',')
+          .append(bboxX).append(',')
+          .append(bboxY).append(',')
+          .append(seed);
+        for (double e : extras) sb.append(',').append(e);
+        return sb.toString();
+    }
+}
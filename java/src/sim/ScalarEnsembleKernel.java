@@ -0,0 +1,61 @@
+package sim;
+
+import static sim.PairKernel.*;
+
+/**
+ * Plain-Java EnsembleKernel; also the tail of VectorEnsembleKernel. One
+ * replicate at a time with the sums in registers: the interleaved state is
+ * read with stride R, which costs nothing while it fits in cache.
+ */
+public class ScalarEnsembleKernel implements EnsembleKernel {
+
+    @Override
+    public void accumulate(int i, int n, int R, double rRep2, double rOri2,
+                           double[] x, double[] y, double[] vx, double[] vy, double[] invSpeed,
+                           double width, double height, double[] acc) {
+        accumulate(i, n, R, 0, R, rRep2, rOri2, x, y, vx, vy, invSpeed, width, height, acc);
+    }
+
+    /** Replicates from..to only. */
+    void accumulate(int i, int n, int R, int from, int to, double rRep2, double rOri2,
+                    double[] x, double[] y, double[] vx, double[] vy, double[] invSpeed,
+                    double width, double height, double[] acc) {
+        double halfW = width / 2.0, halfH = height / 2.0;
+        for (int r = from; r < to; r++) {
+            double px = x[i * R + r], py = y[i * R + r];
+            double repX = 0, repY = 0, attX = 0, attY = 0, oriX = 0, oriY = 0;
+            int repCount = 0, socialCount = 0;
+
+            for (int j = 0, k = r; j < n; j++, k += R) {
+                double dx = x[k] - px;
+                double dy = y[k] - py;
+                dx = dx > halfW ? dx - width : dx < -halfW ? dx + width : dx;
+                dy = dy > halfH ? dy - height : dy < -halfH ? dy + height : dy;
+                double d2 = dx * dx + dy * dy;
+                double inv = d2 > 0 ? 1.0 / Math.sqrt(d2) : 0.0;
+                double ux = dx * inv, uy = dy * inv;
+
+                if (d2 < rRep2) {
+                    repX -= ux;
+                    repY -= uy;
+                    repCount++;
+                } else if (d2 < rOri2) {
+                    attX += ux;
+                    attY += uy;
+                    oriX += vx[k] * invSpeed[j];
+                    oriY += vy[k] * invSpeed[j];
+                    socialCount++;
+                }
+            }
+
+            acc[REP_X * R + r] = repX;
+            acc[REP_Y * R + r] = repY;
+            acc[REP_COUNT * R + r] = repCount;
+            acc[ATT_X * R + r] = attX;
+            acc[ATT_Y * R + r] = attY;
+            acc[ORI_X * R + r] = oriX;
+            acc[ORI_Y * R + r] = oriY;
+            acc[SOCIAL_COUNT * R + r] = socialCount;
+        }
+    }
+}
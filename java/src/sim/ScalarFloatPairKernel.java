@@ -0,0 +1,53 @@
+package sim;
+
+import static sim.PairKernel.*;
+
+/**
+ * Plain-Java FloatPairKernel; also the tail loop and the indexed path of
+ * VectorFloatPairKernel.
+ */
+public class ScalarFloatPairKernel implements FloatPairKernel {
+
+    @Override
+    public void accumulate(float px, float py, float rRep2, float rOri2,
+                           float[] x, float[] y, float[] vx, float[] vy, float[] invSpeed,
+                           int[] idx, int count, float width, float height, float[] acc) {
+        float halfW = width / 2f, halfH = height / 2f;
+        float repX = 0, repY = 0, attX = 0, attY = 0, oriX = 0, oriY = 0;
+        int repCount = 0, socialCount = 0;
+
+        for (int k = 0; k < count; k++) {
+            int j = idx == null ? k : idx[k];
+
+            // minimal image; positions are wrapped, so one fold is enough
+            float dx = x[j] - px;
+            float dy = y[j] - py;
+            dx = dx > halfW ? dx - width : dx < -halfW ? dx + width : dx;
+            dy = dy > halfH ? dy - height : dy < -halfH ? dy + height : dy;
+            float d2 = dx * dx + dy * dy;
+            float inv = d2 > 0 ? 1f / (float) Math.sqrt(d2) : 0f;
+            float ux = dx * inv, uy = dy * inv;
+
+            if (d2 < rRep2) {
+                repX -= ux;
+                repY -= uy;
+                repCount++;
+            } else if (d2 < rOri2) {
+                attX += ux;
+                attY += uy;
+                oriX += vx[j] * invSpeed[j];
+                oriY += vy[j] * invSpeed[j];
+                socialCount++;
+            }
+        }
+
+        acc[REP_X] = repX;
+        acc[REP_Y] = repY;
+        acc[REP_COUNT] = repCount;
+        acc[ATT_X] = attX;
+        acc[ATT_Y] = attY;
+        acc[ORI_X] = oriX;
+        acc[ORI_Y] = oriY;
+        acc[SOCIAL_COUNT] = socialCount;
+    }
+}
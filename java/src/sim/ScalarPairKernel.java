@@ -0,0 +1,51 @@
+package sim;
+
+/**
+ * Plain-Java PairKernel; also the tail loop and the indexed (grid) path of
+ * VectorPairKernel.
+ */
+public class ScalarPairKernel implements PairKernel {
+
+    @Override
+    public void accumulate(double px, double py, double rRep2, double rOri2,
+                           double[] x, double[] y, double[] vx, double[] vy, double[] invSpeed,
+                           int[] idx, int count, double width, double height, double[] acc) {
+        double halfW = width / 2.0, halfH = height / 2.0;
+        double repX = 0, repY = 0, attX = 0, attY = 0, oriX = 0, oriY = 0;
+        int repCount = 0, socialCount = 0;
+
+        for (int k = 0; k < count; k++) {
+            int j = idx == null ? k : idx[k];
+
+            // minimal image; positions are wrapped, so one fold is enough
+            double dx = x[j] - px;
+            double dy = y[j] - py;
+            dx = dx > halfW ? dx - width : dx < -halfW ? dx + width : dx;
+            dy = dy > halfH ? dy - height : dy < -halfH ? dy + height : dy;
+            double d2 = dx * dx + dy * dy;
+            double inv = d2 > 0 ? 1.0 / Math.sqrt(d2) : 0.0;
+            double ux = dx * inv, uy = dy * inv;
+
+            if (d2 < rRep2) {
+                repX -= ux;
+                repY -= uy;
+                repCount++;
+            } else if (d2 < rOri2) {
+                attX += ux;
+                attY += uy;
+                oriX += vx[j] * invSpeed[j];
+                oriY += vy[j] * invSpeed[j];
+                socialCount++;
+            }
+        }
+
+        acc[REP_X] = repX;
+        acc[REP_Y] = repY;
+        acc[REP_COUNT] = repCount;
+        acc[ATT_X] = attX;
+        acc[ATT_Y] = attY;
+        acc[ORI_X] = oriX;
+        acc[ORI_Y] = oriY;
+        acc[SOCIAL_COUNT] = socialCount;
+    }
+}
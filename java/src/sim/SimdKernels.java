@@ -0,0 +1,25 @@
+package sim;
+
+/**
+ * Loads the SIMD variants of the kernels. They live in java/simd because they
+ * only compile and run with --add-modules jdk.incubator.vector; when a class
+ * is missing or the module is not loaded the scalar kernel is used instead.
+ * -Dsim.simd=false forces the scalar kernels.
+ */
+final class SimdKernels {
+
+    private SimdKernels() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T load(String className, T fallback) {
+        if (Boolean.parseBoolean(System.getProperty("sim.simd", "true"))) {
+            try {
+                return (T) Class.forName(className).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // not built, or jdk.incubator.vector not loaded: fall through
+            }
+        }
+        return fallback;
+    }
+}
@@ -2,141 +2,685 @@ package sim;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.stream.Stream;
 
 public class SimulationRunner {
 
+    private static final String[] HEADER = {
+            "run", "N", "p", "n1", "n2", "angle1_deg", "angle2_deg", "dirX", "dirY", "bbox_X", "bbox_Y", "seed"};
+
     public static void main(String[] args) {
 
         try {
-            // CLI args: [0] path to JSON config, [1] optional number of threads
-            String configPath = args != null && args.length >= 1 ? args[0] : "config/experiment1_retry.json";
-            int numThreads = args != null && args.length >= 2 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+            // Replay a single recorded run: --replay <config> <seed>
+            if (args != null && args.length >= 3 && args[0].equals("--replay")) {
+                replay(args[1], Long.parseLong(args[2]));
+                return;
+            }
+            // Work for a coordinator on another JVM or machine: --worker <host:port> [threads]
+            if (args != null && args.length >= 2 && args[0].equals("--worker")) {
+                String[] address = args[1].split(":");
+                int threads = args.length >= 3 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+                new SweepWorker(address[0], Integer.parseInt(address[1])).run(threads);
+                return;
+            }
+            // Hand the sweep out to workers and write their results: --coordinator <config> [port]
+            boolean coordinator = args != null && args.length >= 2 && args[0].equals("--coordinator");
+            if (coordinator) {
+                Job job = new Job(readConfig(Paths.get(args[1])), "");
+                if (job.config.has("adaptive")) System.out.println("adaptive is not supported by the coordinator; using num_runs");
+                if (job.config.has("refine")) System.out.println("refine is not supported by the coordinator; using the configured grid");
+                int port = args.length >= 3 ? Integer.parseInt(args[2]) : job.config.optInt("coordinator_port", 7070);
+                new SweepCoordinator(job.config, job.baseSeed, job.grid, job.done, job.writer).serve(port);
+                job.writer.close();
+                writeSummary(job.summary, job.outputCsv, "");
+                System.out.println("All work units done. Results saved to " + resultsPath(job.format, job.outputCsv) + ".");
+                return;
+            }
+
+            // CLI args: config paths (files, directories of *.json or glob patterns), then an optional number of threads
+            List<String> paths = new ArrayList<>(args == null ? Collections.emptyList() : Arrays.asList(args));
+            int numThreads = paths.size() >= 2 && paths.get(paths.size() - 1).matches("\\d+")
+                    ? Integer.parseInt(paths.remove(paths.size() - 1)) : Runtime.getRuntime().availableProcessors();
+            if (paths.isEmpty()) paths.add("config/experiment1_retry.json");
+            List<Path> configPaths = configPaths(paths);
+
+            // configs of one batch must not share an output file
+            List<JSONObject> configs = new ArrayList<>();
+            Map<String, Path> outputs = new HashMap<>();
+            for (Path path : configPaths) {
+                JSONObject config = readConfig(path);
+                Path other = outputs.put(config.getString("output_csv"), path);
+                if (other != null) {
+                    throw new IllegalArgumentException(other + " and " + path + " both write " + config.getString("output_csv"));
+                }
+                configs.add(config);
+            }
+            List<Job> jobs = new ArrayList<>();
+            for (int i = 0; i < configs.size(); i++) {
+                jobs.add(new Job(configs.get(i), configs.size() > 1 ? stem(configPaths.get(i)) : ""));
+            }
+            run(jobs, numThreads);
+
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Run the sweeps of all jobs on one pool. Their tasks are submitted in
+     * turn, one from each config, so every config makes progress and the
+     * pool has other configs' work while one config finishes its last runs.
+     */
+    private static void run(List<Job> jobs, int numThreads) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        // Thread pool for parallel simulations, fed through a bounded window of in-flight runs
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        int tasksPerThread = 0;
+        boolean synchronous = false;
+        for (Job job : jobs) {
+            tasksPerThread = Math.max(tasksPerThread, job.config.optInt("tasks_per_thread", 4));
+            synchronous |= job.updateMode == ArrayFlock.UpdateMode.SYNCHRONOUS;
+        }
+        SweepScheduler scheduler = new SweepScheduler(pool, numThreads * tasksPerThread);
+        // Shared pool that splits synchronous steps of a single run across cores
+        ForkJoinPool stepPool = synchronous ? new ForkJoinPool(numThreads) : null;
+
+        List<Iterator<SweepScheduler.Task>> sources = new ArrayList<>();
+        for (Job job : jobs) sources.add(job.start(scheduler, stepPool));
+        while (!sources.isEmpty()) {
+            for (Iterator<Iterator<SweepScheduler.Task>> it = sources.iterator(); it.hasNext(); ) {
+                Iterator<SweepScheduler.Task> source = it.next();
+                if (source.hasNext()) scheduler.submit(source.next());
+                else it.remove();
+            }
+        }
+
+        // Wait for all tasks
+        scheduler.awaitAll();
+        pool.shutdown();
+        if (stepPool != null) stepPool.shutdown();
+
+        for (Job job : jobs) job.finish(numThreads);
+        if (jobs.size() > 1) {
+            System.out.printf("Batch of %d configs done in %.1f s using %d threads:%n",
+                    jobs.size(), (System.nanoTime() - start) / 1e9, numThreads);
+            for (Job job : jobs) System.out.println("  " + job.report());
+        }
+    }
+
+    // the config files named by the arguments: files as given, directories as their *.json, glob patterns expanded
+    static List<Path> configPaths(List<String> args) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> s = Files.list(path)) {
+                    s.filter(p -> p.toString().endsWith(".json")).sorted().forEach(paths::add);
+                }
+            } else if (arg.matches(".*[*?\\[{].*")) {
+                // walk from the last directory before the first wildcard
+                int wildcard = arg.split("[*?\\[{]", 2)[0].lastIndexOf('/');
+                Path base = Paths.get(wildcard < 0 ? "." : arg.substring(0, wildcard + 1));
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + arg);
+                List<Path> matches = new ArrayList<>();
+                if (Files.isDirectory(base)) {
+                    try (Stream<Path> s = Files.walk(base)) {
+                        s.filter(Files::isRegularFile)
+                         .map(p -> wildcard < 0 ? base.relativize(p) : p)
+                         .filter(matcher::matches).sorted().forEach(matches::add);
+                    }
+                }
+                if (matches.isEmpty()) throw new IllegalArgumentException("no config matches " + arg);
+                paths.addAll(matches);
+            } else {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    private static JSONObject readConfig(Path path) throws IOException {
+        // Läs JSON
+        String jsonString = new String(Files.readAllBytes(path));
+        return new JSONObject(jsonString);
+    }
+
+    private static String stem(Path path) {
+        return path.getFileName().toString().replaceFirst("\\.json$", "");
+    }
+
+    private static String resultsPath(ResultWriter.Format format, String outputCsv) {
+        if (format == ResultWriter.Format.BINARY) return ResultWriter.binaryPath(outputCsv);
+        if (format == ResultWriter.Format.NONE) return SweepSummary.summaryPath(outputCsv);
+        return outputCsv;
+    }
+
+    private static void writeSummary(SweepSummary summary, String outputCsv, String tag) throws IOException {
+        if (summary == null) return;
+        summary.write(outputCsv);
+        System.out.println(tag + "Summary of " + summary.cells() + " cells saved to " + SweepSummary.summaryPath(outputCsv) + ".");
+    }
+
+    // output columns: the fixed ones, then one per swept agent parameter
+    static String[] header(String[] extraNames) {
+        String[] header = Arrays.copyOf(HEADER, HEADER.length + extraNames.length);
+        System.arraycopy(extraNames, 0, header, HEADER.length, extraNames.length);
+        return header;
+    }
+
+    /** One config of a run: its settings, outputs and, once started, its sweep. */
+    static class Job {
+        final String label;
+        final String tag; // prefix of this config's messages in a batch
+        final JSONObject config;
+        final String outputCsv;
+        final int numRuns;
+        final ArrayFlock.UpdateMode updateMode;
+        final long baseSeed;
+        final ParameterGrid grid;
+        final ResultWriter.Format format;
+        final Map<String, double[]> done;
+        final ResultWriter writer;
+        final SweepSummary summary;
+        final AdaptiveSampler adaptive;
+        final GridRefiner refiner;
+        final int ensemble;
+        SweepMetrics metrics;
+        BurnInCache burnIn;
+        ResultCache cache;
+        Sweep sweep;
 
-            // Läs JSON
-            String jsonString = new String(Files.readAllBytes(Paths.get(configPath)));
-            JSONObject config = new JSONObject(jsonString);
+        /** Read the config and open its outputs; label is "" when it runs alone. */
+        Job(JSONObject config, String label) throws IOException {
+            this.config = config;
+            this.label = label;
+            this.tag = label.isEmpty() ? "" : "[" + label + "] ";
 
             //String outputCsv = config.getString("output_csv");
-            String outputCsv = "data/" + config.getString("output_csv");
-            int numRuns = config.getInt("num_runs");
-            int runTime = config.getInt("run_time");
-            boolean useFeedback = config.getBoolean("use_feedback");
-
-            JSONArray N_values = config.getJSONArray("N_values");
-            JSONArray n1_values = config.getJSONArray("n1_values");
-            JSONArray n2_values = config.getJSONArray("n2_values");
-            JSONArray p_values = config.getJSONArray("p_values");
-            JSONArray angle1_values = config.getJSONArray("angle1_deg_values");
-            JSONArray angle2_values = config.getJSONArray("angle2_deg_values");
-
-            CsvWriter csv = new CsvWriter(outputCsv);
-            csv.writeHeader("run", "N",  "p", "n1", "n2", "angle1_deg", "angle2_deg", "dirX", "dirY", "bbox_X", "bbox_Y");
-
-            Random rng = new Random();
-
-            // Thread pool for parallel simulations
-            ExecutorService pool = Executors.newFixedThreadPool(numThreads);
-            List<Future<?>> futures = new ArrayList<>();
-
-            // Loopa över alla kombinationer
-            for (int iN = 0; iN < N_values.length(); iN++) {
-                int N = N_values.getInt(iN);
-
-                // Check if we should use p_values or n1/n2 arrays
-                if (p_values.length() > 1) {
-                    // Mode 1: Loop over p_values and calculate n1, n2
-                    for (int ip = 0; ip < p_values.length(); ip++) {
-                        double p = p_values.getDouble(ip);
-                        int n1 = (int) (p * N); // number of informed agents of type 1
-                        int n2 = 0;
-                        
-                        for (int ia1 = 0; ia1 < angle1_values.length(); ia1++) {
-                            double angle1 = Math.toRadians(angle1_values.getDouble(ia1));
-
-                            for (int ia2 = 0; ia2 < angle2_values.length(); ia2++) {
-                                double angle2 = Math.toRadians(angle2_values.getDouble(ia2));
-
-                                // Kör flera repetitioner (parallellt)
-                                for (int run = 1; run <= numRuns; run++) {
-                                    final int fRun = run;
-                                    futures.add(pool.submit(() -> {
-                                        CouzinModel sim = new CouzinModel(N, n1, n2, angle1, angle2, runTime, new Random(rng.nextLong()), useFeedback);
-                                        CouzinModel.SimulationResult result = sim.runSimulation();
-                                        Agent.Vec2 groupDir = result.groupDirection;
-                                        double[] bbox = result.boundingBox;
-
-                                        csv.writeRow(fRun, N, p, n1, n2, Math.toDegrees(angle1),
-                                                Math.toDegrees(angle2), groupDir.x, groupDir.y, bbox[0], bbox[1]);
-
-                                        System.out.println("Run " + fRun + " | N=" + N + " p = " + p + " n1=" + n1 + " n2=" + n2 +
-                                                " angle1=" + Math.toDegrees(angle1) + " angle2=" + Math.toDegrees(angle2) +
-                                                " dir=(" + groupDir.x + ", " + groupDir.y + ")");
-                                        return null;
-                                    }));
-                                }
-                            }
-                        }
+            outputCsv = "data/" + config.getString("output_csv");
+            numRuns = config.getInt("num_runs");
+            // fail before any output is opened rather than in every run
+            if (config.getInt("run_time") <= CouzinModel.MEASURE_STEPS) {
+                throw new IllegalArgumentException(tag + "run_time must exceed the " + CouzinModel.MEASURE_STEPS +
+                        " steps over which the group direction is measured: " + config.getInt("run_time"));
+            }
+            updateMode = ArrayFlock.UpdateMode.valueOf(config.optString("update_mode", "sequential").toUpperCase());
+
+            // Every run gets its own seed derived from (base seed, cell, run); see Seeds
+            baseSeed = config.has("seed") ? config.getLong("seed") : new SplittableRandom().nextLong();
+            System.out.println(tag + "Base seed: " + baseSeed);
+
+            // Cells are expanded lazily, largest N first; see ParameterGrid
+            grid = ParameterGrid.fromConfig(config);
+            String[] header = header(grid.extraNames());
+
+            // "csv", "binary", "both" or "none" (summary only)
+            format = ResultWriter.Format.valueOf(config.optString("output_format", "csv").toUpperCase());
+
+            // Resume: cut the outputs back to their last committed batch and skip the runs they hold
+            // (nothing to resume from without raw rows)
+            boolean resume = config.optBoolean("resume", true) && format != ResultWriter.Format.NONE;
+            Checkpoint checkpoint = new Checkpoint(outputCsv);
+            done = resume ? checkpoint.recover() : new HashMap<>();
+            if (!done.isEmpty()) {
+                System.out.println(tag + "Resuming: " + done.size() + " runs already in " + outputCsv + ", skipping them");
+            }
+
+            // Results are written in batches on a dedicated thread
+            writer = new ResultWriter(outputCsv, header, format,
+                    config.optInt("writer_queue", 4096),
+                    config.optInt("writer_flush_rows", 256),
+                    config.optLong("writer_flush_ms", 1000));
+            if (resume) writer.setCheckpoint(checkpoint);
+
+            // Optional per-cell summary folded as results are written (always on with output_format "none")
+            Object summaryConfig = config.opt("summary");
+            if (format == ResultWriter.Format.NONE || Boolean.TRUE.equals(summaryConfig) || summaryConfig instanceof JSONObject) {
+                JSONObject sc = summaryConfig instanceof JSONObject ? (JSONObject) summaryConfig : new JSONObject();
+                summary = new SweepSummary(grid.extraNames(), sc.optInt("sketch_k", 128));
+                // kept runs in key order, so the same output always folds to the same state
+                for (Map.Entry<String, double[]> e : new TreeMap<>(done).entrySet()) summary.add(e.getKey(), e.getValue());
+                writer.setSummary(summary);
+            } else {
+                summary = null;
+            }
+
+            // Optional sequential stopping: replicates per cell adapt to the spread of its outcomes
+            adaptive = config.has("adaptive") ? new AdaptiveSampler(config.getJSONObject("adaptive")) : null;
+            // Optional coarse-to-fine refinement of one axis where the outcome changes fastest; see GridRefiner
+            refiner = config.has("refine") ? new GridRefiner(config.getJSONObject("refine"), grid, numRuns, done) : null;
+            if (adaptive != null && refiner != null) throw new IllegalArgumentException("adaptive and refine cannot be combined");
+            // Optional ensemble mode: this many replicates of a cell per task, stepped together (EnsembleFlock)
+            ensemble = ensembleSize(config);
+        }
+
+        /**
+         * Set up the sweep on the shared pools.
+         * @return its tasks, expanded a cell at a time as they are taken
+         */
+        Iterator<SweepScheduler.Task> start(SweepScheduler scheduler, ForkJoinPool stepPool) {
+            if (ensemble > 1 && adaptive != null) System.out.println(tag + "ensemble is not used with adaptive replicates");
+            if (ensemble > 1 && refiner != null) System.out.println(tag + "ensemble is not used with refine");
+            if (ensemble != config.optInt("ensemble", 1)) {
+                System.out.println(tag + "ensemble is not used with " + (topological(config) ? "topological interaction" : "the float engine"));
+            }
+            // Progress line every progress_interval_ms, MBean sim:type=SweepMetrics and JFR events
+            long planned = adaptive != null || refiner != null ? -1 : Math.max(0, grid.size() * numRuns - done.size());
+            metrics = new SweepMetrics(planned, scheduler, writer, config.optLong("progress_interval_ms", 5000));
+            metrics.setLabel(label);
+            metrics.start();
+            // Optional shared burn-in: runs fork from cached equilibrated flocks; see BurnInCache
+            burnIn = BurnInCache.fromConfig(config, baseSeed);
+            // Optional persistent result cache shared across configs; see ResultCache
+            cache = ResultCache.fromConfig(config);
+            sweep = new Sweep(config, baseSeed, stepPool, writer, scheduler, adaptive, refiner, metrics, burnIn, cache, tag);
+
+            // with refine, one cell per line along the refined axis
+            Iterator<ParameterGrid.Cell> cells = refiner != null ? refiner.lines().iterator() : grid.iterator();
+            ArrayDeque<SweepScheduler.Task> pending = new ArrayDeque<>();
+            return new Iterator<SweepScheduler.Task>() {
+                @Override
+                public boolean hasNext() {
+                    while (pending.isEmpty() && cells.hasNext()) expand(cells.next(), pending);
+                    return !pending.isEmpty();
+                }
+
+                @Override
+                public SweepScheduler.Task next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return sweep.timed(pending.poll());
+                }
+            };
+        }
+
+        // the tasks of one cell, skipping the runs already done
+        private void expand(ParameterGrid.Cell cell, ArrayDeque<SweepScheduler.Task> tasks) {
+            if (adaptive != null) {
+                List<Integer> runs = new ArrayList<>();
+                AdaptiveSampler.CellState state = adaptive.start(cell, done, runs);
+                for (int run : runs) {
+                    tasks.add(sweep.adaptiveRun(state, run));
+                }
+                return;
+            }
+            if (refiner != null) {
+                List<GridRefiner.Run> runs = new ArrayList<>();
+                GridRefiner.Line line = refiner.start(cell, runs);
+                for (GridRefiner.Run r : runs) {
+                    tasks.add(sweep.refineRun(line, r));
+                }
+                return;
+            }
+            List<Integer> batch = new ArrayList<>();
+            for (int run = 1; run <= numRuns; run++) {
+                if (done.containsKey(RunRecord.key(run, cell))) continue;
+                if (ensemble > 1) {
+                    // replicates of the cell go out in batches stepped together
+                    batch.add(run);
+                    if (batch.size() == ensemble) {
+                        List<Integer> runs = new ArrayList<>(batch);
+                        tasks.add(() -> sweep.runEnsemble(cell, runs));
+                        batch.clear();
                     }
-                } else {
-                    // Mode 2: Loop over n1_values and n2_values arrays
-                    for (int in1 = 0; in1 < n1_values.length(); in1++) {
-                        int n1 = n1_values.getInt(in1);
-                        
-                        for (int in2 = 0; in2 < n2_values.length(); in2++) {
-                            int n2 = n2_values.getInt(in2);
-                            double p = (double) n1 / N; // Calculate p for logging
-                            
-                            for (int ia1 = 0; ia1 < angle1_values.length(); ia1++) {
-                                double angle1 = Math.toRadians(angle1_values.getDouble(ia1));
-
-                                for (int ia2 = 0; ia2 < angle2_values.length(); ia2++) {
-                                    double angle2 = Math.toRadians(angle2_values.getDouble(ia2));
-
-                                    // Kör flera repetitioner (parallellt)
-                                    for (int run = 1; run <= numRuns; run++) {
-                                        final int fRun = run;
-                                        futures.add(pool.submit(() -> {
-                                            CouzinModel sim = new CouzinModel(N, n1, n2, angle1, angle2, runTime, new Random(rng.nextLong()), useFeedback);
-                                            CouzinModel.SimulationResult result = sim.runSimulation();
-                                            Agent.Vec2 groupDir = result.groupDirection;
-                                            double[] bbox = result.boundingBox;
-
-                                            csv.writeRow(fRun, N, p, n1, n2, Math.toDegrees(angle1),
-                                                    Math.toDegrees(angle2), groupDir.x, groupDir.y, bbox[0], bbox[1]);
-
-                                            System.out.println("Run " + fRun + " | N=" + N + " p = " + p + " n1=" + n1 + " n2=" + n2 +
-                                                    " angle1=" + Math.toDegrees(angle1) + " angle2=" + Math.toDegrees(angle2) +
-                                                    " dir=(" + groupDir.x + ", " + groupDir.y + ")");
-                                            return null;
-                                        }));
-                                    }
-                                }
-                            }
-                        }
+                    continue;
+                }
+                final int fRun = run;
+                tasks.add(() -> sweep.runOne(cell, fRun));
+            }
+            if (!batch.isEmpty()) tasks.add(() -> sweep.runEnsemble(cell, batch));
+        }
+
+        /** Close the outputs once every task has completed. */
+        void finish(int numThreads) throws IOException, InterruptedException {
+            writer.close();
+            writeSummary(summary, outputCsv, tag);
+            metrics.stop();
+            if (burnIn != null) System.out.println(tag + burnIn.summary());
+            if (cache != null) {
+                int evicted = cache.trim();
+                System.out.println(tag + cache.summary() + (evicted > 0 ? ", " + evicted + " evicted" : ""));
+            }
+            System.out.println(tag + "All simulations done. Results saved to " + resultsPath(format, outputCsv) + " using " + numThreads + " threads.");
+        }
+
+        /** Wall time and throughput of this config's share of a batch. */
+        String report() {
+            double seconds = sweep.wallNanos() / 1e9;
+            long runs = metrics.getRunsCompleted();
+            return String.format("%s: %.1f s, %d runs (%d cached), %.1f runs/s, %.3g agent updates/s",
+                    label, seconds, runs, metrics.getRunsFromCache(),
+                    seconds > 0 ? runs / seconds : 0, seconds > 0 ? metrics.getAgentUpdates() / seconds : 0);
+        }
+    }
+
+    /** What every run of one sweep shares. */
+    static class Sweep {
+        final JSONObject config;
+        final long baseSeed;
+        final ForkJoinPool stepPool;
+        final ResultWriter writer;
+        final SweepScheduler scheduler;
+        final AdaptiveSampler adaptive;
+        final GridRefiner refiner;
+        final SweepMetrics metrics;
+        final BurnInCache burnIn; // null = every run spawns in the initial box
+        final ResultCache cache;  // null = every run is simulated
+        final String tag;         // prefix of messages in a batch
+
+        // first task start and last task end, in System.nanoTime
+        private final LongAccumulator firstStart = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator lastEnd = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+        Sweep(JSONObject config, long baseSeed, ForkJoinPool stepPool, ResultWriter writer,
+              SweepScheduler scheduler, AdaptiveSampler adaptive, GridRefiner refiner, SweepMetrics metrics,
+              BurnInCache burnIn, ResultCache cache, String tag) {
+            this.config = config;
+            this.baseSeed = baseSeed;
+            this.stepPool = stepPool;
+            this.writer = writer;
+            this.scheduler = scheduler;
+            this.adaptive = adaptive;
+            this.refiner = refiner;
+            this.metrics = metrics;
+            this.burnIn = burnIn;
+            this.cache = cache;
+            this.tag = tag;
+        }
+
+        /** The task, recording when it starts and ends in this sweep's wall time. */
+        SweepScheduler.Task timed(SweepScheduler.Task task) {
+            return () -> {
+                firstStart.accumulate(System.nanoTime());
+                try {
+                    task.run();
+                } finally {
+                    lastEnd.accumulate(System.nanoTime());
+                }
+            };
+        }
+
+        /** Time from the first task's start to the last task's end (0 before any task ran). */
+        long wallNanos() {
+            long start = firstStart.get(), end = lastEnd.get();
+            return start == Long.MAX_VALUE ? 0 : end - start;
+        }
+
+        /**
+         * Simulate one replicate of a cell and hand the result to the writer.
+         */
+        RunRecord runOne(ParameterGrid.Cell cell, int run) throws InterruptedException {
+            long seed = Seeds.derive(baseSeed, cell, run);
+            CouzinModel sim = createModel(config, cell, seed, stepPool);
+            if (burnIn != null) burnIn.configure(sim, cell, run);
+            sim.setMetrics(metrics);
+            String key = cache != null ? sim.parameterKey(false) : null;
+            CouzinModel.SimulationResult result = key != null ? cache.lookup(key) : null;
+            if (result != null) {
+                metrics.runCached();
+            } else {
+                result = sim.runSimulation();
+                if (key != null) cache.store(key, result);
+            }
+            RunRecord record = new RunRecord(run, cell, result, seed);
+            writer.submit(record);
+            return record;
+        }
+
+        /**
+         * Simulate several replicates of a cell in one ensemble and hand each result to the writer.
+         */
+        void runEnsemble(ParameterGrid.Cell cell, List<Integer> runs) throws InterruptedException {
+            List<CouzinModel> models = new ArrayList<>();
+            CouzinModel.SimulationResult[] results = new CouzinModel.SimulationResult[runs.size()];
+            List<Integer> toRun = new ArrayList<>(); // indices into runs that are not cached
+            for (int k = 0; k < runs.size(); k++) {
+                int run = runs.get(k);
+                CouzinModel model = createModel(config, cell, Seeds.derive(baseSeed, cell, run), null);
+                if (burnIn != null) burnIn.configure(model, cell, run);
+                models.add(model);
+                results[k] = cache != null ? cache.lookup(model.parameterKey(true)) : null;
+                if (results[k] != null) metrics.runCached();
+                else toRun.add(k);
+            }
+            if (!toRun.isEmpty()) {
+                List<CouzinModel> batch = new ArrayList<>();
+                for (int k : toRun) batch.add(models.get(k));
+                List<CouzinModel.SimulationResult> computed = CouzinModel.runEnsemble(batch, metrics);
+                for (int i = 0; i < toRun.size(); i++) {
+                    int k = toRun.get(i);
+                    results[k] = computed.get(i);
+                    if (cache != null) cache.store(models.get(k).parameterKey(true), results[k]);
+                }
+            }
+            for (int k = 0; k < runs.size(); k++) {
+                writer.submit(new RunRecord(runs.get(k), cell, results[k], models.get(k).getSeed()));
+            }
+        }
+
+        /**
+         * A replicate of an adaptive cell; when it completes the cell's batch, the
+         * next batch (if the cell has not converged) is queued as follow-up work.
+         */
+        SweepScheduler.Task adaptiveRun(AdaptiveSampler.CellState state, int run) {
+            return () -> {
+                ParameterGrid.Cell c = state.cell;
+                String cell = "Cell N=" + c.N + " n1=" + c.n1 + " n2=" + c.n2 +
+                        " angle1=" + c.angle1Deg + " angle2=" + c.angle2Deg;
+                RunRecord record;
+                try {
+                    record = runOne(c, run);
+                } catch (Exception | Error e) {
+                    // without this the cell would wait forever for the run's result
+                    adaptive.fail(state);
+                    System.out.println(tag + cell + " stopped: run " + run + " failed (" + e + ")");
+                    throw e;
+                }
+                List<Integer> next = adaptive.complete(state, record);
+                for (int r : next) {
+                    scheduler.submitLater(timed(adaptiveRun(state, r)));
+                }
+                if (state.finished()) {
+                    System.out.println(tag + cell + (state.failed() ? " stopped" : " done") + " after " +
+                            state.stats.count() + " runs, R=" + state.stats.resultantLength() +
+                            " direction CI width=" + adaptive.directionWidthDeg(state.stats) + " deg");
+                }
+            };
+        }
+
+        /**
+         * A replicate of a refined line; when it completes the line's round, the
+         * cells of the next round (if the line is not done) are queued as follow-up work.
+         */
+        SweepScheduler.Task refineRun(GridRefiner.Line line, GridRefiner.Run r) {
+            return () -> {
+                RunRecord record;
+                try {
+                    record = runOne(r.point.cell, r.run);
+                } catch (Exception | Error e) {
+                    // without this the line would wait forever for the run's result
+                    refiner.fail(line);
+                    System.out.println(tag + refiner.label(line) + " stopped: run " + r.run + " failed (" + e + ")");
+                    if (line.finished()) System.out.println(tag + refiner.summary(line));
+                    throw e;
+                }
+                for (GridRefiner.Run next : refiner.complete(line, r.point, record)) {
+                    scheduler.submitLater(timed(refineRun(line, next)));
+                }
+                if (line.finished()) System.out.println(tag + refiner.summary(line));
+            };
+        }
+    }
+
+    private static boolean topological(JSONObject config) {
+        return config.optString("interaction", "metric").equalsIgnoreCase("topological");
+    }
+
+    // replicates per EnsembleFlock; EnsembleFlock scans all pairs in double, so topological and float runs go one by one
+    static int ensembleSize(JSONObject config) {
+        return topological(config) || floatEngine(config) ? 1 : config.optInt("ensemble", 1);
+    }
+
+    private static boolean floatEngine(JSONObject config) {
+        return config.optString("engine", "object").equalsIgnoreCase("float");
+    }
+
+    /**
+     * Build the model for one run from the config's model settings.
+     */
+    static CouzinModel createModel(JSONObject config, ParameterGrid.Cell cell, long seed, ForkJoinPool stepPool) {
+        int runTime = config.getInt("run_time");
+        boolean useFeedback = config.optBoolean("use_feedback", false);
+
+        CouzinModel sim = new CouzinModel(cell.N, cell.n1, cell.n2, Math.toRadians(cell.angle1Deg),
+                Math.toRadians(cell.angle2Deg), runTime, seed, useFeedback);
+        // [{...naive}, {...g1}, {...g2}, {"count" or "fraction", "angle_deg", ...}, ...]: see Species
+        JSONArray species = config.optJSONArray("species");
+        if (species != null) {
+            for (int t = 0; t < species.length(); t++) {
+                JSONObject entry = species.getJSONObject(t);
+                if (t < 3) {
+                    // counts and angles of the default types come from the grid
+                    if (entry.has("count") || entry.has("fraction") || entry.has("angle_deg")) {
+                        throw new IllegalArgumentException("species " + t + " takes its count and angle from the grid");
                     }
+                    sim.setSpecies(t, sim.getSpecies(t).with(entry));
+                } else {
+                    int count = entry.has("count") ? entry.getInt("count")
+                            : (int) Math.round(entry.getDouble("fraction") * cell.N);
+                    sim.addSpecies(Species.naive("species" + t, useFeedback).with(entry), count);
                 }
             }
+        }
+        for (int i = 0; i < cell.extras.length; i++) {
+            sim.setAgentParameter(cell.extraNames[i], cell.extras[i]);
+        }
+        // "all_pairs" (reference), "grid" or "verlet" (lists within R_ori + verlet_skin, kept across steps)
+        sim.setNeighborMode(Flock.NeighborMode.valueOf(
+                config.optString("neighbor_strategy", "all_pairs").toUpperCase()));
+        sim.setVerletSkin(config.optDouble("verlet_skin", VerletList.DEFAULT_SKIN));
+        // "metric" (zones R_rep / R_ori) or "topological" (repulsion within R_rep, else the k nearest; KdTree)
+        if (topological(config)) sim.setTopological(config.optInt("k", 7));
+        // "object" (reference), "arrays" or "float" (FAST kernel in float32, sequential only)
+        sim.setEngine(CouzinModel.Engine.valueOf(
+                config.optString("engine", "object").toUpperCase()));
+        // "sequential" (in place, as before) or "synchronous" (double-buffered, parallel within a run)
+        sim.setUpdateMode(ArrayFlock.UpdateMode.valueOf(
+                config.optString("update_mode", "sequential").toUpperCase()));
+        // "exact" (as Agent.update) or "fast" (trig-free, SIMD neighbor scan when available; arrays engine)
+        sim.setKernel(ArrayFlock.Kernel.valueOf(
+                config.optString("kernel", "exact").toUpperCase()));
+        sim.setStepPool(stepPool);
+
+        // {"every": k, "max_agents": m, "dir": path}: one memory-mapped trajectory file per run, named by seed
+        JSONObject trajectory = config.optJSONObject("trajectory");
+        if (trajectory != null) {
+            String stem = config.getString("output_csv").replaceFirst("\\.csv$", "");
+            String dir = trajectory.optString("dir", "data/trajectories/" + stem);
+            sim.setTrajectory(Paths.get(dir, seed + ".traj"),
+                    trajectory.optInt("every", 10), trajectory.optInt("max_agents", 0));
+        }
+
+        // {"every": k, "align_deg": a, "dir": path}: order-parameter time series per run, named by seed
+        JSONObject observables = config.optJSONObject("observables");
+        if (observables != null) {
+            String stem = config.getString("output_csv").replaceFirst("\\.csv$", "");
+            String dir = observables.optString("dir", "data/observables/" + stem);
+            sim.setObservables(Paths.get(dir, seed + ".obs"),
+                    observables.optInt("every", 10), observables.optDouble("align_deg", 20));
+        }
+
+        // {"file": path, "every": k, "max_agents": m, "slots": s}: one run at a time streams to a viewer; see LiveView
+        JSONObject liveView = config.optJSONObject("live_view");
+        if (liveView != null) {
+            sim.setLiveView(Paths.get(liveView.optString("file", "data/live.view")), liveView.optInt("every", 1),
+                    liveView.optInt("max_agents", 4096), liveView.optInt("slots", 8));
+        }
+        return sim;
+    }
+
+    /**
+     * Re-run the row of the config's output CSV that has the given seed and
+     * print the recorded and the replayed result side by side.
+     */
+    private static void replay(String configPath, long seed) throws IOException {
+        JSONObject config = new JSONObject(new String(Files.readAllBytes(Paths.get(configPath))));
+        String outputCsv = "data/" + config.getString("output_csv");
+
+        List<String> lines = Files.readAllLines(Paths.get(outputCsv));
+        List<String> header = Arrays.asList(lines.get(0).split(","));
+        String[] row = null;
+        for (String line : lines) {
+            String[] fields = line.split(",");
+            if (fields.length == header.size() && fields[header.indexOf("seed")].equals(Long.toString(seed))) {
+                row = fields;
+                break;
+            }
+        }
+        if (row == null) {
+            System.out.println("No row with seed " + seed + " in " + outputCsv);
+            return;
+        }
 
-            // Wait for all tasks
-            for (Future<?> f : futures) {
-                try { f.get(); } catch (Exception e) { e.printStackTrace(); }
+        String[] extraNames = header.subList(HEADER.length, header.size()).toArray(new String[0]);
+        double[] extras = new double[extraNames.length];
+        for (int i = 0; i < extras.length; i++) extras[i] = Double.parseDouble(row[HEADER.length + i]);
+        ParameterGrid.Cell cell = new ParameterGrid.Cell(
+                Integer.parseInt(row[header.indexOf("N")]),
+                Double.parseDouble(row[header.indexOf("p")]),
+                Integer.parseInt(row[header.indexOf("n1")]),
+                Integer.parseInt(row[header.indexOf("n2")]),
+                configuredAngle(config.getJSONArray("angle1_deg_values"), row[header.indexOf("angle1_deg")]),
+                configuredAngle(config.getJSONArray("angle2_deg_values"), row[header.indexOf("angle2_deg")]),
+                extraNames, extras);
+        int run = Integer.parseInt(row[header.indexOf("run")]);
+
+        CouzinModel model = createModel(config, cell, seed, null);
+        if (config.has("burn_in")) {
+            // the burn-in families hang off the base seed, which only a fixed "seed" makes known
+            if (!config.has("seed")) {
+                System.out.println("Replay of a burn_in sweep needs the config's \"seed\"");
+                return;
             }
-            pool.shutdown();
+            BurnInCache.fromConfig(config, config.getLong("seed")).configure(model, cell, run);
+        }
+        // ensemble rows were computed by EnsembleFlock; a one-replicate ensemble gives the same numbers
+        CouzinModel.SimulationResult result = ensembleSize(config) > 1
+                ? CouzinModel.runEnsemble(Collections.singletonList(model), null).get(0)
+                : model.runSimulation();
 
-            csv.close();
-            System.out.println("All simulations done. Results saved to " + outputCsv + " using " + numThreads + " threads.");
+        System.out.println(String.join(",", header));
+        System.out.println(String.join(",", row) + "   (recorded)");
+        System.out.println(new RunRecord(run, cell, result, seed).toCsv() + "   (replayed)");
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
+    // the configured degree value that was logged as this angle, so the model gets the exact same radians
+    private static double configuredAngle(JSONArray values, String logged) {
+        double recorded = Double.parseDouble(logged);
+        for (int i = 0; i < values.length(); i++) {
+            if (RunRecord.loggedAngle(values.getDouble(i)) == recorded) return values.getDouble(i);
         }
+        return recorded;
     }
 }
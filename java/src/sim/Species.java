@@ -0,0 +1,119 @@
+package sim;
+
+import org.json.JSONObject;
+
+/**
+ * Parameters shared by all agents of one type: motion, zones, preference
+ * and feedback. Immutable; every agent of a run points at its type's entry
+ * in the run's table (type 0 naive, 1 and 2 informed toward g1 and g2, 3+
+ * extra species from the config), so an Agent carries only its state.
+ *
+ * The defaults are those of the original Agent fields.
+ */
+public final class Species {
+
+    /** Parameters that can be set by name (config "species" entries and the sweep's extra axes). */
+    public static final String[] PARAMETERS = {"speed", "maxTurn", "R_rep", "R_ori", "w", "w_max", "weight_inc", "weight_dec"};
+
+    public final String name;
+    public final double speed;      // distance per step
+    public final double maxTurn;    // maximum angle per step (radians)
+    public final double R_rep;      // zone of repulsion
+    public final double R_ori;      // zone of orientation + attraction
+    public final double w;          // initial weight of the preference vector
+    public final double w_max;      // maximum weight with feedback
+    public final double weight_inc; // feedback weight change per step
+    public final double weight_dec;
+    public final boolean useFeedback;
+    public final boolean informed;  // has a preferred direction
+    public final double gx, gy;     // preference vector (unit), zero when not informed
+
+    // derived for the array engines' kernels
+    final double rRep2, rOri2, cosTurn, sinTurn, invSpeed;
+
+    private Species(String name, double speed, double maxTurn, double R_rep, double R_ori, double w, double w_max,
+                    double weight_inc, double weight_dec, boolean useFeedback, double gx, double gy) {
+        this.name = name;
+        this.speed = speed;
+        this.maxTurn = maxTurn;
+        this.R_rep = R_rep;
+        this.R_ori = R_ori;
+        this.w = w;
+        this.w_max = w_max;
+        this.weight_inc = weight_inc;
+        this.weight_dec = weight_dec;
+        this.useFeedback = useFeedback;
+        this.informed = gx != 0 || gy != 0;
+        this.gx = gx;
+        this.gy = gy;
+        this.rRep2 = R_rep * R_rep;
+        this.rOri2 = R_ori * R_ori;
+        this.cosTurn = Math.cos(maxTurn);
+        this.sinTurn = Math.sin(maxTurn);
+        this.invSpeed = 1.0 / speed;
+    }
+
+    /** Agents without a preferred direction. */
+    public static Species naive(String name, boolean useFeedback) {
+        // feedback starts from a lower weight
+        return new Species(name, 1.0, 0.3, 2 * 12, 2.5 * 92, useFeedback ? 0.10 : 0.35, 0.45,
+                0.008, 0.0006, useFeedback, 0, 0);
+    }
+
+    /** Agents informed of direction g (normalized here). */
+    public static Species informed(String name, Agent.Vec2 g, boolean useFeedback) {
+        return naive(name, useFeedback).toward(g);
+    }
+
+    public Species toward(Agent.Vec2 g) {
+        Agent.Vec2 u = g.copy().normalize();
+        return new Species(name, speed, maxTurn, R_rep, R_ori, w, w_max, weight_inc, weight_dec, useFeedback, u.x, u.y);
+    }
+
+    /** This species with feedback on or off; the initial weight w goes back to that mode's default. */
+    public Species withFeedback(boolean useFeedback) {
+        return new Species(name, speed, maxTurn, R_rep, R_ori, useFeedback ? 0.10 : 0.35, w_max,
+                weight_inc, weight_dec, useFeedback, gx, gy);
+    }
+
+    /** This species with one of PARAMETERS changed. */
+    public Species with(String parameter, double value) {
+        double[] p = {speed, maxTurn, R_rep, R_ori, w, w_max, weight_inc, weight_dec};
+        int i = indexOf(parameter);
+        if (i < 0) throw new IllegalArgumentException("Unknown agent parameter: " + parameter);
+        p[i] = value;
+        return new Species(name, p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7], useFeedback, gx, gy);
+    }
+
+    /**
+     * This species with the settings of a config "species" entry applied:
+     * "feedback" first (it resets w), then "angle_deg" and any of PARAMETERS.
+     */
+    public Species with(JSONObject entry) {
+        Species s = this;
+        if (entry.has("name")) {
+            s = new Species(entry.getString("name"), speed, maxTurn, R_rep, R_ori, w, w_max,
+                    weight_inc, weight_dec, useFeedback, gx, gy);
+        }
+        if (entry.has("feedback")) s = s.withFeedback(entry.getBoolean("feedback"));
+        if (entry.has("angle_deg")) s = s.toward(Agent.Vec2.fromAngle(Math.toRadians(entry.getDouble("angle_deg"))));
+        for (String p : PARAMETERS) {
+            if (entry.has(p)) s = s.with(p, entry.getDouble(p));
+        }
+        return s;
+    }
+
+    /** Everything that affects the dynamics, as one line for cache keys. */
+    public String key() {
+        return name + "{speed=" + speed + " maxTurn=" + maxTurn + " R_rep=" + R_rep + " R_ori=" + R_ori
+                + " w=" + w + " w_max=" + w_max + " weight_inc=" + weight_inc + " weight_dec=" + weight_dec
+                + " feedback=" + useFeedback + " g=" + gx + "/" + gy + "}";
+    }
+
+    private static int indexOf(String parameter) {
+        for (int i = 0; i < PARAMETERS.length; i++) {
+            if (PARAMETERS[i].equals(parameter)) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,21 @@
+package sim;
+
+import java.io.IOException;
+
+/**
+ * Something CouzinModel.runSimulation shows the flock to every few steps:
+ * after spawning (step 0) and after every step that is a multiple of every().
+ * Observers only read the flock. Built in are TrajectoryRecorder (raw state)
+ * and ObservableSeries (order parameters); LiveView attaches one per run on view.
+ */
+public interface StepObserver {
+
+    /** Steps between observations. */
+    int every();
+
+    /** The state after `step` completed steps. */
+    void observe(int step, FlockEngine flock) throws IOException;
+
+    /** End of the run: flush and release whatever the observer holds. */
+    void close() throws IOException;
+}
@@ -0,0 +1,300 @@
+package sim;
+
+import org.json.JSONObject;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hands a sweep out to SweepWorker processes over TCP and writes their
+ * results to the sweep's single output file.
+ *
+ * The grid is cut into work units (up to unit_runs runs of one cell), taken
+ * lazily from ParameterGrid as workers ask for them. A unit is leased to one
+ * worker; the lease is extended by every result the worker sends and ends
+ * with the unit. A unit whose lease runs out, or whose worker disconnects, is
+ * queued again for the next worker that asks. Results are accepted from
+ * whoever sends them and each run is written once, so a slow worker that
+ * finishes a reassigned unit still contributes.
+ *
+ * A run that throws on the worker is reported with FAIL. When the worker asks
+ * for its next unit, the failed runs of its last one are queued again; a run
+ * that failed max_failures times is given up and left out of the output
+ * (a resume runs it again), so a run that always throws cannot keep the
+ * sweep from finishing.
+ *
+ * Protocol, one line per message, worker first:
+ *   HELLO   -> CONFIG <baseSeed> <config json>
+ *   NEXT    -> UNIT <id> <cell> <run,run,...> | WAIT <ms> | DONE
+ *   RESULT <id> <run> <seed> <dirX> <dirY> <bboxX> <bboxY>   (no reply)
+ *   FAIL <id> <run> <message>                                  (no reply)
+ */
+public class SweepCoordinator {
+
+    private static class Unit {
+        final int id;
+        final ParameterGrid.Cell cell;
+        final List<Integer> runs;
+        final Set<Integer> remaining;
+        final Map<Integer, Integer> failures = new HashMap<>(); // by run
+        Object owner;   // connection holding the lease, null while queued
+        long deadline;  // lease expiry, System.currentTimeMillis()
+
+        Unit(int id, ParameterGrid.Cell cell, List<Integer> runs) {
+            this.id = id;
+            this.cell = cell;
+            this.runs = runs;
+            this.remaining = new HashSet<>(runs);
+        }
+    }
+
+    private final JSONObject config;
+    private final long baseSeed;
+    private final ResultWriter writer;
+    private final Iterator<ParameterGrid.Cell> cells;
+    private final Map<String, double[]> done;
+    private final int numRuns;
+    private final int unitRuns;
+    private final long leaseMs;
+    private final int maxFailures;
+
+    private final ArrayDeque<Unit> queued = new ArrayDeque<>();     // waiting for (re)assignment
+    private final Map<Integer, Unit> leased = new HashMap<>();      // handed out and not complete, incl. re-queued
+    private ParameterGrid.Cell pendingCell; // cell being cut into units
+    private int pendingRun = 1;
+    private int nextId = 1;
+    private int completedUnits = 0;
+    private final List<String> givenUp = new ArrayList<>(); // runs that failed maxFailures times
+
+    public SweepCoordinator(JSONObject config, long baseSeed, ParameterGrid grid, Map<String, double[]> done,
+                            ResultWriter writer) {
+        this.config = config;
+        this.baseSeed = baseSeed;
+        this.writer = writer;
+        this.cells = grid.iterator();
+        this.done = done;
+        this.numRuns = config.getInt("num_runs");
+        this.unitRuns = config.optInt("unit_runs", 10);
+        this.leaseMs = config.optLong("lease_ms", 300_000);
+        this.maxFailures = config.optInt("max_failures", 3);
+    }
+
+    /**
+     * Accept workers on the port until every unit is complete. Returns once
+     * the last result has been handed to the writer.
+     */
+    public void serve(int port) throws IOException, InterruptedException {
+        List<Thread> connections = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(port)) {
+            server.setSoTimeout(500);
+            System.out.println("Coordinator listening on port " + server.getLocalPort());
+            while (!finished()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread t = new Thread(() -> handle(socket), "coordinator-" + socket.getRemoteSocketAddress());
+                    t.setDaemon(true);
+                    t.start();
+                    connections.add(t);
+                } catch (SocketTimeoutException e) {
+                    // check finished() again
+                }
+            }
+        }
+        // let connected workers read DONE
+        for (Thread t : connections) t.join(2000);
+        if (!givenUp.isEmpty()) {
+            System.out.println(givenUp.size() + " runs failed " + maxFailures + " times and are missing from the output: "
+                    + String.join(", ", givenUp));
+        }
+    }
+
+    /** Runs given up after failing max_failures times (missing from the output). */
+    public synchronized int givenUp() {
+        return givenUp.size();
+    }
+
+    private void handle(Socket socket) {
+        Object owner = new Object();
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split(" ");
+                switch (f[0]) {
+                    case "HELLO":
+                        out.println("CONFIG " + baseSeed + " " + config);
+                        break;
+                    case "NEXT":
+                        out.println(next(owner));
+                        break;
+                    case "RESULT":
+                        result(owner, Integer.parseInt(f[1]), Integer.parseInt(f[2]), Long.parseLong(f[3]),
+                                Double.parseDouble(f[4]), Double.parseDouble(f[5]),
+                                Double.parseDouble(f[6]), Double.parseDouble(f[7]));
+                        break;
+                    case "FAIL":
+                        String[] m = line.split(" ", 4);
+                        fail(Integer.parseInt(m[1]), Integer.parseInt(m[2]), m.length > 3 ? m[3] : "");
+                        break;
+                    default:
+                        System.err.println("Coordinator: unknown message " + line);
+                }
+            }
+        } catch (IOException e) {
+            // worker gone; its units are released below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            release(owner);
+        }
+    }
+
+    // reply to NEXT: an expired or queued unit first, then a new one from the grid
+    private synchronized String next(Object owner) {
+        long now = System.currentTimeMillis();
+        for (Unit u : leased.values()) {
+            if (u.owner == owner) {
+                // a connection works one unit at a time: what is left of its last one failed
+                System.out.println("Unit " + u.id + " has " + u.remaining.size() + " failed runs, queuing them again");
+                u.owner = null;
+                queued.add(u);
+            } else if (u.owner != null && u.deadline < now) {
+                System.out.println("Lease of unit " + u.id + " expired, reassigning");
+                u.owner = null;
+                queued.add(u);
+            }
+        }
+        Unit unit;
+        do {
+            unit = queued.poll();
+        } while (unit != null && !leased.containsKey(unit.id)); // completed meanwhile by its old worker
+        if (unit == null) unit = newUnit();
+        if (unit == null) {
+            return leased.isEmpty() ? "DONE" : "WAIT " + Math.min(1000, leaseMs);
+        }
+        unit.owner = owner;
+        unit.deadline = now + leaseMs;
+        leased.put(unit.id, unit);
+
+        List<Integer> runs = new ArrayList<>(unit.remaining);
+        runs.sort(null);
+        StringBuilder sb = new StringBuilder("UNIT ").append(unit.id).append(' ').append(encode(unit.cell)).append(' ');
+        for (int i = 0; i < runs.size(); i++) sb.append(i == 0 ? "" : ",").append(runs.get(i));
+        return sb.toString();
+    }
+
+    // up to unitRuns runs of the next cells that are not in the resumed output yet
+    private Unit newUnit() {
+        while (cells.hasNext() || pendingCell != null) {
+            ParameterGrid.Cell cell = pendingCell != null ? pendingCell : cells.next();
+            List<Integer> runs = new ArrayList<>();
+            while (pendingRun <= numRuns && runs.size() < unitRuns) {
+                int run = pendingRun++;
+                if (!done.containsKey(RunRecord.key(run, cell))) runs.add(run);
+            }
+            if (pendingRun > numRuns) {
+                pendingCell = null;
+                pendingRun = 1;
+            } else {
+                pendingCell = cell;
+            }
+            if (!runs.isEmpty()) return new Unit(nextId++, cell, runs);
+        }
+        return null;
+    }
+
+    // under the lock, so the last result is with the writer before finished() turns true
+    private synchronized void result(Object owner, int id, int run, long seed,
+                                     double dirX, double dirY, double bboxX, double bboxY) throws InterruptedException {
+        Unit unit = leased.get(id);
+        if (unit == null) return; // unit already completed by another worker
+        if (unit.owner == owner) unit.deadline = System.currentTimeMillis() + leaseMs;
+        if (!unit.remaining.remove(run)) return;
+
+        CouzinModel.SimulationResult result = new CouzinModel.SimulationResult(
+                new Agent.Vec2(dirX, dirY), new double[]{bboxX, bboxY});
+        writer.submit(new RunRecord(run, unit.cell, result, seed));
+        if (unit.remaining.isEmpty()) complete(unit);
+    }
+
+    // a run threw on a worker: retried with the unit, or given up after maxFailures
+    private synchronized void fail(int id, int run, String message) {
+        Unit unit = leased.get(id);
+        if (unit == null || !unit.remaining.contains(run)) return;
+        int failures = unit.failures.merge(run, 1, Integer::sum);
+        ParameterGrid.Cell c = unit.cell;
+        String label = "run " + run + " of N=" + c.N + " n1=" + c.n1 + " n2=" + c.n2 +
+                " angle1=" + RunRecord.loggedAngle(c.angle1Deg) + " angle2=" + RunRecord.loggedAngle(c.angle2Deg);
+        System.out.println("Unit " + id + ": " + label + " failed (" + failures + "/" + maxFailures + "): " + message);
+        if (failures < maxFailures) return;
+        unit.remaining.remove(run);
+        givenUp.add(label);
+        System.out.println("Unit " + id + ": giving up " + label);
+        if (unit.remaining.isEmpty()) complete(unit);
+    }
+
+    private void complete(Unit unit) {
+        int id = unit.id;
+        leased.remove(id);
+        completedUnits++;
+        ParameterGrid.Cell c = unit.cell;
+        System.out.println("Unit " + id + " done (" + completedUnits + " total) | N=" + c.N + " p = " + c.p +
+                " n1=" + c.n1 + " n2=" + c.n2 + " angle1=" + RunRecord.loggedAngle(c.angle1Deg) +
+                " angle2=" + RunRecord.loggedAngle(c.angle2Deg) + " runs=" + unit.runs.size());
+    }
+
+    // a worker disconnected: queue its unfinished units for someone else
+    private synchronized void release(Object owner) {
+        for (Unit u : leased.values()) {
+            if (u.owner == owner) {
+                System.out.println("Worker left with unit " + u.id + ", reassigning " + u.remaining.size() + " runs");
+                u.owner = null;
+                queued.add(u);
+            }
+        }
+    }
+
+    private synchronized boolean finished() {
+        return !cells.hasNext() && pendingCell == null && queued.isEmpty() && leased.isEmpty();
+    }
+
+    /** Cell as one token: N;p;n1;n2;angle1;angle2;name=value;... (configured angles, exact doubles). */
+    static String encode(ParameterGrid.Cell cell) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(cell.N).append(';').append(cell.p).append(';').append(cell.n1).append(';').append(cell.n2)
+          .append(';').append(cell.angle1Deg).append(';').append(cell.angle2Deg);
+        for (int i = 0; i < cell.extras.length; i++) {
+            sb.append(';').append(cell.extraNames[i]).append('=').append(cell.extras[i]);
+        }
+        return sb.toString();
+    }
+
+    static ParameterGrid.Cell decode(String token) {
+        String[] f = token.split(";");
+        String[] names = new String[f.length - 6];
+        double[] extras = new double[names.length];
+        for (int i = 0; i < names.length; i++) {
+            String[] kv = f[6 + i].split("=");
+            names[i] = kv[0];
+            extras[i] = Double.parseDouble(kv[1]);
+        }
+        return new ParameterGrid.Cell(Integer.parseInt(f[0]), Double.parseDouble(f[1]),
+                Integer.parseInt(f[2]), Integer.parseInt(f[3]),
+                Double.parseDouble(f[4]), Double.parseDouble(f[5]), names, extras);
+    }
+}
@@ -0,0 +1,325 @@
+package sim;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters of a running sweep: agent updates and neighbor-pair evaluations
+ * (reported by CouzinModel as it steps), a histogram of per-run wall times,
+ * the scheduler's queue depth and the writer's backlog.
+ *
+ * They are published three ways: as the MBean "sim:type=SweepMetrics", as
+ * JFR events (sim.Run per run, sim.SweepProgress per interval; record with
+ * -XX:StartFlightRecording) and as one progress line on stdout per interval,
+ * which replaces the line per finished run.
+ */
+public class SweepMetrics implements SweepMetricsMBean {
+
+    private static final String OBJECT_NAME = "sim:type=SweepMetrics";
+    private static final int BUCKETS = 32;
+
+    @Name("sim.Run")
+    @Label("Simulation Run")
+    @Category("Couzin")
+    @Description("One CouzinModel.runSimulation")
+    static class RunEvent extends Event {
+        @Label("N")
+        int N;
+        @Label("n1")
+        int n1;
+        @Label("n2")
+        int n2;
+        @Label("Seed")
+        long seed;
+        @Label("Steps")
+        int steps;
+        @Label("Pair Evaluations")
+        long pairEvaluations;
+        @Label("Neighbor List Builds")
+        long neighborListBuilds;
+    }
+
+    @Name("sim.SweepProgress")
+    @Label("Sweep Progress")
+    @Category("Couzin")
+    static class ProgressEvent extends Event {
+        @Label("Runs Completed")
+        long runsCompleted;
+        @Label("Runs Planned")
+        long runsPlanned;
+        @Label("Runs/s")
+        double runsPerSecond;
+        @Label("Agent Updates/s")
+        double agentUpdatesPerSecond;
+        @Label("Pair Evaluations/s")
+        double pairEvaluationsPerSecond;
+        @Label("Queue Depth")
+        int queueDepth;
+        @Label("Writer Backlog")
+        int writerBacklog;
+        @Label("ETA (s)")
+        double etaSeconds;
+    }
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder cachedRuns = new LongAdder();
+    private final LongAdder agentUpdates = new LongAdder();
+    private final LongAdder pairEvaluations = new LongAdder();
+    private final LongAdder listSteps = new LongAdder(), listBuilds = new LongAdder(); // VERLET runs only
+    private final AtomicLongArray runTimes = new AtomicLongArray(BUCKETS);
+    private final long runsPlanned;
+
+    private final SweepScheduler scheduler;
+    private final ResultWriter writer;
+    private final long intervalMs;
+    private final ScheduledExecutorService reporter;
+    private String label = ""; // config of a batch, see setLabel
+    private ObjectName name;
+
+    // previous sample and the rates derived from it, written by the reporter thread
+    private long lastNanos, lastRuns, lastUpdates, lastPairs;
+    private volatile double runRate, updateRate, pairRate;
+
+    /**
+     * @param runsPlanned total runs of the sweep, -1 if unknown
+     * @param intervalMs  period of the progress line and event (0 = no progress line)
+     */
+    public SweepMetrics(long runsPlanned, SweepScheduler scheduler, ResultWriter writer, long intervalMs) {
+        this.runsPlanned = runsPlanned;
+        this.scheduler = scheduler;
+        this.writer = writer;
+        this.intervalMs = intervalMs;
+        this.lastNanos = System.nanoTime();
+        this.reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sweep-progress");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Name the config these metrics belong to when several run in one JVM:
+     * the progress line starts with "[label]" and the MBean is registered as
+     * "sim:type=SweepMetrics,config=label". Call before start.
+     */
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    /** Register the MBean and start the progress line. */
+    public void start() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            name = new ObjectName(label.isEmpty() ? OBJECT_NAME : OBJECT_NAME + ",config=" + ObjectName.quote(label));
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.err.println("SweepMetrics: MBean not registered: " + e);
+        }
+        if (intervalMs > 0) {
+            reporter.scheduleAtFixedRate(() -> report(false), intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Stop reporting, print a final line and unregister the MBean. */
+    public void stop() {
+        reporter.shutdownNow();
+        report(true);
+        try {
+            if (name != null) ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            // already gone
+        }
+    }
+
+    /** Steps taken by a run since its last report. */
+    public void stepsDone(long agentUpdates, long pairEvaluations) {
+        this.agentUpdates.add(agentUpdates);
+        this.pairEvaluations.add(pairEvaluations);
+    }
+
+    /** Steps taken by a VERLET run since its last report, and the neighbor-list builds among them. */
+    public void neighborListsBuilt(long steps, long builds) {
+        listSteps.add(steps);
+        listBuilds.add(builds);
+    }
+
+    public void runFinished(long wallNanos) {
+        runs.increment();
+        long ms = wallNanos / 1_000_000;
+        int bucket = ms <= 1 ? 0 : Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(ms));
+        runTimes.incrementAndGet(bucket);
+    }
+
+    /** A run served from the ResultCache: completed, but not timed or stepped. */
+    public void runCached() {
+        runs.increment();
+        cachedRuns.increment();
+    }
+
+    private synchronized void report(boolean last) {
+        long now = System.nanoTime();
+        long r = runs.sum(), u = agentUpdates.sum(), p = pairEvaluations.sum();
+        double dt = (now - lastNanos) / 1e9;
+        if (dt > 0) {
+            runRate = (r - lastRuns) / dt;
+            updateRate = (u - lastUpdates) / dt;
+            pairRate = (p - lastPairs) / dt;
+        }
+        lastNanos = now;
+        lastRuns = r;
+        lastUpdates = u;
+        lastPairs = p;
+
+        ProgressEvent event = new ProgressEvent();
+        if (event.shouldCommit()) {
+            event.runsCompleted = r;
+            event.runsPlanned = runsPlanned;
+            event.runsPerSecond = runRate;
+            event.agentUpdatesPerSecond = updateRate;
+            event.pairEvaluationsPerSecond = pairRate;
+            event.queueDepth = getQueueDepth();
+            event.writerBacklog = getWriterBacklog();
+            event.etaSeconds = getEtaSeconds();
+            event.commit();
+        }
+        if (intervalMs > 0 || last) {
+            System.out.println(progressLine());
+        }
+    }
+
+    String progressLine() {
+        StringBuilder sb = new StringBuilder(label.isEmpty() ? "" : "[" + label + "] ")
+                .append("Progress: ").append(getRunsCompleted());
+        if (runsPlanned >= 0) {
+            sb.append('/').append(runsPlanned)
+              .append(String.format(" (%.1f%%)", runsPlanned == 0 ? 100.0 : 100.0 * getRunsCompleted() / runsPlanned));
+        }
+        long cached = getRunsFromCache();
+        if (cached > 0) sb.append(" runs (").append(cached).append(" cached)");
+        else sb.append(" runs");
+        sb.append(String.format(" | %.2f runs/s, %.3g agent updates/s, %.3g pairs/s",
+                runRate, updateRate, pairRate));
+        if (getNeighborListBuilds() > 0) {
+            sb.append(String.format(" | lists rebuilt every %.1f steps", getStepsPerNeighborListBuild()));
+        }
+        sb.append(String.format(" | run p50 <= %.0f ms, p95 <= %.0f ms", getRunTimeP50Ms(), getRunTimeP95Ms()));
+        sb.append(" | queued ").append(getQueueDepth()).append(", writer backlog ").append(getWriterBacklog());
+        double eta = getEtaSeconds();
+        if (eta >= 0) {
+            long s = Math.round(eta);
+            sb.append(String.format(" | ETA %dh%02dm%02ds", s / 3600, s / 60 % 60, s % 60));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public long getRunsCompleted() {
+        return runs.sum();
+    }
+
+    @Override
+    public long getRunsFromCache() {
+        return cachedRuns.sum();
+    }
+
+    @Override
+    public long getRunsPlanned() {
+        return runsPlanned;
+    }
+
+    @Override
+    public long getAgentUpdates() {
+        return agentUpdates.sum();
+    }
+
+    @Override
+    public long getPairEvaluations() {
+        return pairEvaluations.sum();
+    }
+
+    @Override
+    public long getNeighborListBuilds() {
+        return listBuilds.sum();
+    }
+
+    @Override
+    public double getStepsPerNeighborListBuild() {
+        long builds = listBuilds.sum();
+        return builds == 0 ? 0 : (double) listSteps.sum() / builds;
+    }
+
+    @Override
+    public double getRunsPerSecond() {
+        return runRate;
+    }
+
+    @Override
+    public double getAgentUpdatesPerSecond() {
+        return updateRate;
+    }
+
+    @Override
+    public double getPairEvaluationsPerSecond() {
+        return pairRate;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return scheduler == null ? 0 : scheduler.inFlight();
+    }
+
+    @Override
+    public int getWriterBacklog() {
+        return writer == null ? 0 : writer.backlog();
+    }
+
+    @Override
+    public double getEtaSeconds() {
+        if (runsPlanned < 0 || runRate <= 0) return -1;
+        return Math.max(0, runsPlanned - getRunsCompleted()) / runRate;
+    }
+
+    @Override
+    public long[] getRunTimeHistogramMs() {
+        long[] h = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) h[i] = runTimes.get(i);
+        return h;
+    }
+
+    @Override
+    public double getRunTimeP50Ms() {
+        return quantileMs(0.5);
+    }
+
+    @Override
+    public double getRunTimeP95Ms() {
+        return quantileMs(0.95);
+    }
+
+    // upper edge of the bucket holding the q-quantile
+    private double quantileMs(double q) {
+        long[] h = getRunTimeHistogramMs();
+        long total = 0;
+        for (long c : h) total += c;
+        if (total == 0) return 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += h[i];
+            if (seen >= q * total) return Math.pow(2, i + 1);
+        }
+        return Math.pow(2, BUCKETS);
+    }
+}
@@ -0,0 +1,48 @@
+package sim;
+
+/**
+ * JMX view of a running sweep, registered as "sim:type=SweepMetrics" (see
+ * SweepMetrics). Rates are over the last progress interval.
+ */
+public interface SweepMetricsMBean {
+
+    long getRunsCompleted();
+
+    /** Completed runs that were served from the result cache instead of simulated. */
+    long getRunsFromCache();
+
+    /** Runs the sweep is expected to do in total, -1 if unknown (adaptive). */
+    long getRunsPlanned();
+
+    long getAgentUpdates();
+
+    long getPairEvaluations();
+
+    /** Verlet neighbor-list builds (neighbor_strategy "verlet"). */
+    long getNeighborListBuilds();
+
+    /** Steps of Verlet runs per list build, 0 before the first. */
+    double getStepsPerNeighborListBuild();
+
+    double getRunsPerSecond();
+
+    double getAgentUpdatesPerSecond();
+
+    double getPairEvaluationsPerSecond();
+
+    /** Runs queued in or running on the pool. */
+    int getQueueDepth();
+
+    /** Results waiting for the writer thread. */
+    int getWriterBacklog();
+
+    /** Estimated seconds to the end of the sweep, -1 if unknown. */
+    double getEtaSeconds();
+
+    /** Runs per wall-time bucket: bucket i counts runs of [2^i, 2^(i+1)) ms (bucket 0 includes < 1 ms). */
+    long[] getRunTimeHistogramMs();
+
+    double getRunTimeP50Ms();
+
+    double getRunTimeP95Ms();
+}
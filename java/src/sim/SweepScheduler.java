@@ -0,0 +1,87 @@
+package sim;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded submission into the runner's pool: at most maxInFlight tasks are
+ * queued or running at once, and submit blocks until a slot frees up. The
+ * caller can therefore feed tasks from a lazy source without materializing
+ * the whole sweep as futures.
+ *
+ * Running tasks can schedule follow-up work with submitLater (which never
+ * blocks a pool thread); the submitting thread moves follow-ups into the
+ * pool ahead of new work, and awaitAll keeps doing so until no task is left
+ * that could produce more.
+ */
+public class SweepScheduler {
+
+    /** A unit of work; failures are reported and do not stop the sweep. */
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    private final ExecutorService pool;
+    private final Semaphore slots;
+    private final int maxInFlight;
+    private final BlockingQueue<Task> followUps = new LinkedBlockingQueue<>();
+
+    public SweepScheduler(ExecutorService pool, int maxInFlight) {
+        this.pool = pool;
+        this.maxInFlight = maxInFlight;
+        this.slots = new Semaphore(maxInFlight);
+    }
+
+    public void submit(Task task) throws InterruptedException {
+        Task next;
+        while ((next = followUps.poll()) != null) {
+            execute(next);
+        }
+        execute(task);
+    }
+
+    /** Queue a task from inside a running task; it is submitted by the submitting thread. */
+    public void submitLater(Task task) {
+        followUps.add(task);
+    }
+
+    private void execute(Task task) throws InterruptedException {
+        slots.acquire();
+        try {
+            pool.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /** Tasks queued in or running on the pool (the queue depth reported by SweepMetrics). */
+    public int inFlight() {
+        return maxInFlight - slots.availablePermits();
+    }
+
+    /** Block until every submitted task, and every follow-up they queue, has finished. */
+    public void awaitAll() throws InterruptedException {
+        while (true) {
+            Task next = followUps.poll(10, TimeUnit.MILLISECONDS);
+            if (next != null) {
+                execute(next);
+            } else if (slots.availablePermits() == maxInFlight && followUps.isEmpty()) {
+                // tasks queue their follow-ups before releasing their slot, so none can appear now
+                return;
+            }
+        }
+    }
+}
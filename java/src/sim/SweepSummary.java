@@ -0,0 +1,148 @@
+package sim;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-cell summary of a sweep, folded one result at a time as runs are
+ * written, so the analysis does not have to reload the raw rows:
+ *
+ *   runs, mean_dir_deg, resultant_length   circular mean of (dirX, dirY) and
+ *                                          its mean resultant length (CellStats)
+ *   toward_g1, toward_g2, compromise       runs whose direction is closest to
+ *                                          g1, to g2 or to their bisector; the
+ *                                          split shows bimodal cells (no
+ *                                          compromise when g1 = -g2; ties go
+ *                                          to g1, then g2)
+ *   bbox_X_mean, bbox_X_p05 .. bbox_X_p95  mean and quantiles of the bounding
+ *   bbox_Y_mean, bbox_Y_p05 .. bbox_Y_p95  box sides (QuantileSketch)
+ *
+ * One row per cell, the cell columns first as in the raw CSV, sorted by them.
+ * Written as <output>.summary.csv. Not thread-safe: ResultWriter feeds it
+ * from its one thread.
+ */
+public class SweepSummary {
+
+    private static final double[] QUANTILES = {0.05, 0.25, 0.5, 0.75, 0.95};
+
+    private final String[] extraNames;
+    private final int sketchK;
+    private final Map<String, Cell> cells = new LinkedHashMap<>(); // by cell columns as in RunRecord.key
+
+    private static class Cell {
+        final double g1, g2, bisector; // radians; bisector NaN when g1 = -g2
+        final CellStats stats = new CellStats();
+        final QuantileSketch bboxX, bboxY;
+        long towardG1, towardG2, compromise;
+
+        Cell(double angle1Deg, double angle2Deg, int k) {
+            g1 = Math.toRadians(angle1Deg);
+            g2 = Math.toRadians(angle2Deg);
+            double sx = Math.cos(g1) + Math.cos(g2), sy = Math.sin(g1) + Math.sin(g2);
+            bisector = Math.hypot(sx, sy) < 1e-9 ? Double.NaN : Math.atan2(sy, sx);
+            bboxX = new QuantileSketch(k);
+            bboxY = new QuantileSketch(k);
+        }
+
+        void add(double dirX, double dirY, double bbX, double bbY) {
+            stats.add(dirX, dirY, bbX, bbY);
+            bboxX.add(bbX);
+            bboxY.add(bbY);
+            double theta = Math.atan2(dirY, dirX);
+            double d1 = gap(theta, g1), d2 = gap(theta, g2);
+            double dc = Double.isNaN(bisector) ? Double.POSITIVE_INFINITY : gap(theta, bisector);
+            if (d1 <= d2 && d1 <= dc) towardG1++;
+            else if (d2 <= dc) towardG2++;
+            else compromise++;
+        }
+    }
+
+    public SweepSummary(String[] extraNames, int sketchK) {
+        this.extraNames = extraNames;
+        this.sketchK = sketchK;
+    }
+
+    /** The summary's path for an output CSV path. */
+    public static String summaryPath(String csvPath) {
+        return (csvPath.endsWith(".csv") ? csvPath.substring(0, csvPath.length() - 4) : csvPath) + ".summary.csv";
+    }
+
+    public void add(RunRecord r) {
+        add(r.key(), r.angle1Deg, r.angle2Deg, r.dirX, r.dirY, r.bboxX, r.bboxY);
+    }
+
+    /**
+     * Fold a run known by its RunRecord.key, e.g. one recovered by Checkpoint
+     * on resume, with its outcome {dirX, dirY, bbox_X, bbox_Y}.
+     */
+    public void add(String runKey, double[] outcome) {
+        String[] f = runKey.split(",");
+        add(runKey, Double.parseDouble(f[4]), Double.parseDouble(f[5]), outcome[0], outcome[1], outcome[2], outcome[3]);
+    }
+
+    private void add(String runKey, double angle1Deg, double angle2Deg, double dirX, double dirY, double bbX, double bbY) {
+        String cellKey = runKey.substring(0, runKey.lastIndexOf(','));
+        cells.computeIfAbsent(cellKey, c -> new Cell(angle1Deg, angle2Deg, sketchK)).add(dirX, dirY, bbX, bbY);
+    }
+
+    public int cells() {
+        return cells.size();
+    }
+
+    public void write(String csvPath) throws IOException {
+        List<String> header = new ArrayList<>(Arrays.asList("N", "p", "n1", "n2", "angle1_deg", "angle2_deg"));
+        header.addAll(Arrays.asList(extraNames));
+        header.addAll(Arrays.asList("runs", "mean_dir_deg", "resultant_length", "toward_g1", "toward_g2", "compromise"));
+        for (String side : new String[]{"bbox_X", "bbox_Y"}) {
+            header.add(side + "_mean");
+            for (double q : QUANTILES) header.add(String.format("%s_p%02d", side, Math.round(q * 100)));
+        }
+
+        Path path = Paths.get(summaryPath(csvPath));
+        try (BufferedWriter w = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            w.write(String.join(",", header));
+            w.newLine();
+            List<Map.Entry<String, Cell>> rows = new ArrayList<>(cells.entrySet());
+            rows.sort((a, b) -> compareCells(a.getKey(), b.getKey()));
+            for (Map.Entry<String, Cell> e : rows) {
+                Cell c = e.getValue();
+                StringBuilder sb = new StringBuilder(e.getKey());
+                sb.append(',').append(c.stats.count())
+                  .append(',').append(Math.toDegrees(c.stats.meanDirection()))
+                  .append(',').append(c.stats.resultantLength())
+                  .append(',').append(c.towardG1).append(',').append(c.towardG2).append(',').append(c.compromise)
+                  .append(',').append(c.stats.bboxMeanX());
+                for (double q : QUANTILES) sb.append(',').append(c.bboxX.quantile(q));
+                sb.append(',').append(c.stats.bboxMeanY());
+                for (double q : QUANTILES) sb.append(',').append(c.bboxY.quantile(q));
+                w.write(sb.toString());
+                w.newLine();
+            }
+        }
+    }
+
+    // numerically, column by column
+    private static int compareCells(String a, String b) {
+        String[] fa = a.split(","), fb = b.split(",");
+        for (int i = 0; i < Math.min(fa.length, fb.length); i++) {
+            int c = Double.compare(Double.parseDouble(fa[i]), Double.parseDouble(fb[i]));
+            if (c != 0) return c;
+        }
+        return Integer.compare(fa.length, fb.length);
+    }
+
+    // absolute angular difference in [0, pi]
+    private static double gap(double a, double b) {
+        double d = Math.abs(a - b) % (2 * Math.PI);
+        return d > Math.PI ? 2 * Math.PI - d : d;
+    }
+}
@@ -0,0 +1,139 @@
+package sim;
+
+import org.json.JSONObject;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs work units handed out by a SweepCoordinator: one connection per
+ * thread, each asking for a unit, simulating its runs and streaming every
+ * result back as soon as it is done. The sweep config and base seed come
+ * from the coordinator, so all workers run the same model.
+ */
+public class SweepWorker {
+
+    // how long to keep retrying while the coordinator is not up yet
+    private static final long CONNECT_RETRY_MS = 30_000;
+
+    private final String host;
+    private final int port;
+
+    private BurnInCache burnIn; // shared by the connections once the first HELLO arrives
+
+    public SweepWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /** Work with the given number of connections until the coordinator says DONE. */
+    public void run(int threads) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        ForkJoinPool[] stepPool = new ForkJoinPool[1];
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    work(stepPool, threads);
+                } catch (IOException e) {
+                    System.err.println(Thread.currentThread().getName() + ": " + e);
+                }
+            }, "worker-" + i);
+            t.start();
+            workers.add(t);
+        }
+        for (Thread t : workers) t.join();
+        synchronized (stepPool) {
+            if (stepPool[0] != null) stepPool[0].shutdown();
+        }
+    }
+
+    private void work(ForkJoinPool[] stepPool, int threads) throws IOException {
+        try (Socket socket = connect();
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            out.println("HELLO");
+            String[] hello = in.readLine().split(" ", 3);
+            long baseSeed = Long.parseLong(hello[1]);
+            JSONObject config = new JSONObject(hello[2]);
+
+            // shared pool for synchronous steps, as in SimulationRunner
+            ForkJoinPool pool = null;
+            if (config.optString("update_mode", "sequential").equalsIgnoreCase("synchronous")) {
+                synchronized (stepPool) {
+                    if (stepPool[0] == null) stepPool[0] = new ForkJoinPool(threads);
+                    pool = stepPool[0];
+                }
+            }
+            BurnInCache cache = burnInCache(config, baseSeed);
+            boolean ensemble = SimulationRunner.ensembleSize(config) > 1;
+
+            while (true) {
+                out.println("NEXT");
+                String reply = in.readLine();
+                if (reply == null || reply.equals("DONE")) return;
+                String[] f = reply.split(" ");
+                if (f[0].equals("WAIT")) {
+                    Thread.sleep(Long.parseLong(f[1]));
+                    continue;
+                }
+
+                int id = Integer.parseInt(f[1]);
+                ParameterGrid.Cell cell = SweepCoordinator.decode(f[2]);
+                int failed = 0;
+                for (String r : f[3].split(",")) {
+                    int run = Integer.parseInt(r);
+                    long seed = Seeds.derive(baseSeed, cell, run);
+                    CouzinModel.SimulationResult result;
+                    try {
+                        CouzinModel model = SimulationRunner.createModel(config, cell, seed, pool);
+                        if (cache != null) cache.configure(model, cell, run);
+                        // ensemble rows come from EnsembleFlock; a one-replicate ensemble gives the same numbers
+                        result = ensemble
+                                ? CouzinModel.runEnsemble(Collections.singletonList(model), null).get(0)
+                                : model.runSimulation();
+                    } catch (RuntimeException e) {
+                        // report and carry on: the coordinator retries the run a few times, then gives it up
+                        e.printStackTrace();
+                        out.println("FAIL " + id + " " + run + " " + e.toString().replaceAll("\\s+", " "));
+                        failed++;
+                        continue;
+                    }
+                    out.println("RESULT " + id + " " + run + " " + seed + " " +
+                            result.groupDirection.x + " " + result.groupDirection.y + " " +
+                            result.boundingBox[0] + " " + result.boundingBox[1]);
+                }
+                System.out.println(Thread.currentThread().getName() + ": unit " + id + " done (N=" + cell.N +
+                        " n1=" + cell.n1 + " n2=" + cell.n2 + ", " + f[3].split(",").length + " runs" +
+                        (failed > 0 ? ", " + failed + " failed" : "") + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized BurnInCache burnInCache(JSONObject config, long baseSeed) {
+        if (burnIn == null) burnIn = BurnInCache.fromConfig(config, baseSeed);
+        return burnIn;
+    }
+
+    private Socket connect() throws IOException, InterruptedException {
+        long giveUp = System.currentTimeMillis() + CONNECT_RETRY_MS;
+        while (true) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException e) {
+                if (System.currentTimeMillis() > giveUp) throw e;
+                Thread.sleep(500);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package sim;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes positions and headings of (a subset of) the agents every k steps
+ * into a preallocated memory-mapped file, one file per run. Frames are plain
+ * stores into the mapping; the OS writes the pages back in the background.
+ *
+ * Layout (little-endian):
+ *   0  "CZTRJ001"
+ *   8  int32 header bytes      12 int32 frame capacity
+ *   16 int32 recorded agents   20 int32 every (steps between frames)
+ *   24 int32 N                 28 float32 width    32 float32 height
+ *   36 int32 frames written    40 int64 seed
+ *   48 int32[agents] agent indices, then int32[agents] informed types
+ *   then frames of: float32 step, agents x (float32 x, float32 y, float32 heading in radians)
+ * See analysis/python/load_trajectory.py.
+ */
+public class TrajectoryRecorder implements StepObserver {
+
+    public static final byte[] MAGIC = "CZTRJ001".getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+    private final int[] agents;
+    private final int every;
+    private final int capacity;
+    private final int headerBytes;
+    private final int frameBytes;
+    private int frames;
+
+    /**
+     * @param maxAgents record at most this many agents, evenly spaced over the flock (0 = all)
+     */
+    public TrajectoryRecorder(Path file, FlockEngine flock, int runTime, int every, int maxAgents,
+                              long seed, double width, double height) throws IOException {
+        int n = flock.size();
+        int count = maxAgents > 0 ? Math.min(maxAgents, n) : n;
+        this.agents = new int[count];
+        for (int k = 0; k < count; k++) agents[k] = (int) ((long) k * n / count);
+        this.every = every;
+        this.capacity = 1 + runTime / every; // initial state, then one frame every `every` steps
+        this.headerBytes = 48 + 8 * count;
+        this.frameBytes = 4 + 12 * count;
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerBytes + (long) capacity * frameBytes);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+
+        buf.put(MAGIC).putInt(headerBytes).putInt(capacity).putInt(count).putInt(every)
+           .putInt(n).putFloat((float) width).putFloat((float) height).putInt(0).putLong(seed);
+        for (int i : agents) buf.putInt(i);
+        for (int i : agents) buf.putInt(flock.informed(i));
+    }
+
+    @Override
+    public int every() {
+        return every;
+    }
+
+    @Override
+    public void observe(int step, FlockEngine flock) {
+        if (frames == capacity) return;
+        int pos = headerBytes + frames * frameBytes;
+        buf.putFloat(pos, step);
+        pos += 4;
+        for (int i : agents) {
+            buf.putFloat(pos, (float) flock.posX(i));
+            buf.putFloat(pos + 4, (float) flock.posY(i));
+            buf.putFloat(pos + 8, (float) Math.atan2(flock.velY(i), flock.velX(i)));
+            pos += 12;
+        }
+        frames++;
+        buf.putInt(36, frames);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
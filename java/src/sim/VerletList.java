@@ -0,0 +1,100 @@
+package sim;
+
+import java.util.Arrays;
+
+/**
+ * Verlet neighbor lists on a torus: for every agent the indices of all agents
+ * within radius + skin (itself included), kept across steps and rebuilt only
+ * when agents may have moved far enough to close the skin.
+ *
+ * An agent updated in step t sees itself at its start-of-step position and
+ * the others at most one step further along, so a pair can have closed by up
+ * to 2 * maxDisplacement + maxSpeed since the lists were built. needsRebuild
+ * asks for a new build before that can exceed the skin (for speed 1 and the
+ * default skin of 20, about every 10 steps), so the lists always hold every
+ * agent within radius. Lists are sorted ascending, so callers visit neighbors
+ * in flock order and get the same sums as a scan of the whole flock.
+ */
+public class VerletList {
+
+    public static final double DEFAULT_SKIN = 20;
+
+    private final double skin;
+    private final NeighborGrid grid = new NeighborGrid();
+
+    // lists in one array: items[start[i] .. start[i+1]) are the neighbors of agent i
+    private int n = -1;
+    private int[] start = new int[0];
+    private int[] items = new int[0];
+    private int[] candidates = new int[0];
+    private double[] refX = new double[0], refY = new double[0]; // positions at the last build
+
+    private long builds;
+
+    public VerletList(double skin) {
+        if (!(skin > 0)) throw new IllegalArgumentException("verlet skin must be > 0: " + skin);
+        this.skin = skin;
+    }
+
+    /** Whether the lists must be rebuilt before a step of agents moving at most maxSpeed. */
+    public boolean needsRebuild(double[] xs, double[] ys, int n, double maxSpeed, double width, double height) {
+        // a neighbor can step into range after the build of the same step
+        if (skin <= maxSpeed) throw new IllegalArgumentException("verlet skin must exceed the agent speed: " + skin);
+        if (n != this.n) return true;
+        double max2 = 0;
+        for (int i = 0; i < n; i++) {
+            double dx = periodic(xs[i] - refX[i], width), dy = periodic(ys[i] - refY[i], height);
+            max2 = Math.max(max2, dx * dx + dy * dy);
+        }
+        return 2 * Math.sqrt(max2) + maxSpeed > skin;
+    }
+
+    /** Build the lists of agents within radius + skin of each other. */
+    public void rebuild(double[] xs, double[] ys, int n, double radius, double width, double height) {
+        this.n = n;
+        builds++;
+        if (refX.length < n) {
+            refX = new double[n];
+            refY = new double[n];
+            start = new int[n + 1];
+            candidates = new int[n];
+        }
+        System.arraycopy(xs, 0, refX, 0, n);
+        System.arraycopy(ys, 0, refY, 0, n);
+
+        double reach = radius + skin, reach2 = reach * reach;
+        grid.rebuild(xs, ys, n, reach, width, height);
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            start[i] = size;
+            int count = grid.gather(xs[i], ys[i], candidates);
+            if (items.length < size + count) items = Arrays.copyOf(items, Math.max(2 * items.length, size + count));
+            for (int k = 0; k < count; k++) {
+                int j = candidates[k];
+                double dx = periodic(xs[j] - xs[i], width), dy = periodic(ys[j] - ys[i], height);
+                if (dx * dx + dy * dy <= reach2) items[size++] = j;
+            }
+        }
+        start[n] = size;
+    }
+
+    /**
+     * Copy the list of agent i (itself included, ascending) into out.
+     * @return number of indices written
+     */
+    public int gather(int i, int[] out) {
+        int count = start[i + 1] - start[i];
+        System.arraycopy(items, start[i], out, 0, count);
+        return count;
+    }
+
+    /** Builds so far. */
+    public long builds() {
+        return builds;
+    }
+
+    private static double periodic(double d, double size) {
+        if (Math.abs(d) > size / 2) d = d > 0 ? d - size : d + size;
+        return d;
+    }
+}
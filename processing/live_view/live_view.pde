@@ -0,0 +1,136 @@
+// Live view of a running Java sweep: maps the file sim.LiveView writes
+// (config key "live_view") and draws the newest complete frame each draw().
+// Frames published between two draws are skipped; the simulation never waits.
+// Layout: see java/src/sim/LiveView.java.
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+String viewFile = "../../data/live.view"; // relative to this sketch folder
+
+ByteBuffer buf;
+int headerBytes, slots, slotBytes;
+float worldWidth, worldHeight;
+long last = -1;
+int dropped = 0;
+
+// the newest complete frame
+int agents = 0;
+float[] xs = new float[0], ys = new float[0], headings = new float[0];
+int[] types = new int[0];
+long seed;
+int step, runTime, flockSize;
+
+color orange = color(242, 140, 40);
+color blue = color(58, 110, 165);
+color white = color(255);
+color other = color(150);
+
+void setup() {
+  size(1400, 1000);
+  frameRate(60);
+}
+
+void draw() {
+  background(30);
+  if (buf == null || changed()) {
+    openView();
+  }
+  if (buf != null) {
+    readLatest();
+  }
+  if (agents == 0) {
+    fill(200);
+    text("Waiting for frames in " + viewFile, 10, 20);
+    return;
+  }
+
+  pushMatrix();
+  float s = min(width / worldWidth, height / worldHeight);
+  scale(s);
+  noStroke();
+  for (int k = 0; k < agents; k++) {
+    pushMatrix();
+    translate(xs[k], ys[k]);
+    rotate(headings[k]);
+    int t = types[k];
+    fill(t == 0 ? white : t == 1 ? orange : t == 2 ? blue : other);
+    beginShape();
+    vertex(8, 0);
+    vertex(-6, 4);
+    vertex(-6, -4);
+    endShape(CLOSE);
+    popMatrix();
+  }
+  popMatrix();
+
+  fill(200);
+  text("seed " + seed + "  step " + step + "/" + runTime + "  N=" + flockSize
+       + "  dropped " + dropped + "  " + nf(frameRate, 0, 1) + " fps", 10, 20);
+}
+
+void openView() {
+  buf = null;
+  Path p = Paths.get(sketchPath(viewFile));
+  if (!Files.exists(p)) return;
+  try (FileChannel channel = FileChannel.open(p, StandardOpenOption.READ)) {
+    buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+  } catch (Exception e) {
+    return;
+  }
+  if (buf.capacity() < 40 || buf.get(0) != 'C' || buf.get(3) != 'L') {
+    buf = null;
+    return;
+  }
+  headerBytes = buf.getInt(8);
+  slots = buf.getInt(12);
+  slotBytes = buf.getInt(16);
+  worldWidth = buf.getFloat(24);
+  worldHeight = buf.getFloat(28);
+}
+
+// a new simulation laid the file out differently
+boolean changed() {
+  return buf.getInt(12) != slots || buf.getInt(16) != slotBytes;
+}
+
+// seqlock read of the latest slot: keep the copy only if its sequence is even and unchanged
+void readLatest() {
+  long f = buf.getLong(32);
+  VarHandle.acquireFence();
+  if (f < 0 || f == last) return;
+  int base = headerBytes + (int) (f % slots) * slotBytes;
+  long seq = buf.getLong(base);
+  VarHandle.acquireFence(); // read the sequence before the frame
+  if ((seq & 1) != 0 || buf.getLong(base + 8) != f) {
+    dropped++;
+    return;
+  }
+  int count = min(buf.getInt(base + 36), (slotBytes - 40) / 16);
+  float[] x = new float[count], y = new float[count], h = new float[count];
+  int[] t = new int[count];
+  int pos = base + 40;
+  for (int k = 0; k < count; k++) {
+    x[k] = buf.getFloat(pos);
+    y[k] = buf.getFloat(pos + 4);
+    h[k] = buf.getFloat(pos + 8);
+    t[k] = buf.getInt(pos + 12);
+    pos += 16;
+  }
+  long s = buf.getLong(base + 16);
+  int st = buf.getInt(base + 24), rt = buf.getInt(base + 28), n = buf.getInt(base + 32);
+  VarHandle.loadLoadFence(); // read the frame before the sequence again
+  if (buf.getLong(base) != seq) {
+    dropped++; // overwritten while copying
+    return;
+  }
+  xs = x; ys = y; headings = h; types = t; agents = count;
+  seed = s; step = st; runTime = rt; flockSize = n;
+  last = f;
+}
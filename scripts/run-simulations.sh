@@ -1,15 +1,22 @@
 #!/usr/bin/env bash
 set -euo pipefail
 
-# Run multiple JSON configs with optional THREADS env var
+# Run multiple JSON configs (as one batch) with optional THREADS env var
 # Usage:
 #   scripts/run-simulations.sh config/experiment_A_b.json config/experiment_B_b.json
 #   THREADS=8 scripts/run-simulations.sh config/*.json
+#   SIMD=1 scripts/run-simulations.sh config/fast.json   # also build/load the SIMD pair kernel
 
 ROOT_DIR="$(cd "$(dirname "$0")"/.. && pwd)"
 OUT_DIR="$ROOT_DIR/out"
 LIB_DIR="$ROOT_DIR/lib"
 SRC_DIR="$ROOT_DIR/java/src"
+SIMD_DIR="$ROOT_DIR/java/simd"
+SIMD="${SIMD:-0}"
+JAVA_OPTS=()
+if [[ "$SIMD" == "1" ]]; then
+  JAVA_OPTS=(--add-modules jdk.incubator.vector)
+fi
 
 # Ensure compiled classes exist; compile if missing
 if [[ ! -d "$OUT_DIR" ]] || [[ -z "$(find "$OUT_DIR" -name '*.class' -print -quit)" ]]; then
@@ -22,6 +29,10 @@ if [[ ! -d "$OUT_DIR" ]] || [[ -z "$(find "$OUT_DIR" -name '*.class' -print -qui
     javac -d "$OUT_DIR" $(find "$SRC_DIR" -name "*.java")
   fi
 fi
+if [[ "$SIMD" == "1" ]] && [[ -z "$(find "$OUT_DIR" -name 'VectorPairKernel.class' -print -quit)" ]]; then
+  echo "Compiling SIMD kernel..."
+  javac --add-modules jdk.incubator.vector -cp "$OUT_DIR" -d "$OUT_DIR" $(find "$SIMD_DIR" -name "*.java")
+fi
 
 THREADS_DEFAULT=$(python - <<'PY'
 import os, multiprocessing
@@ -36,12 +47,10 @@ if [[ $# -lt 1 ]]; then
   exit 1
 fi
 
-# Run each config sequentially; use & to parallelize if desired
-for cfg in "$@"; do
-  echo "Running sim.SimulationRunner with $cfg using $THREADS threads..."
-  if compgen -G "$LIB_DIR/*.jar" > /dev/null; then
-    java -cp "$OUT_DIR:$LIB_DIR/*" sim.SimulationRunner "$cfg" "$THREADS"
-  else
-    java -cp "$OUT_DIR" sim.SimulationRunner "$cfg" "$THREADS"
-  fi
-done
+# Run all configs in one JVM: their runs share one thread pool and a warm JIT
+echo "Running sim.SimulationRunner with $* using $THREADS threads..."
+if compgen -G "$LIB_DIR/*.jar" > /dev/null; then
+  java ${JAVA_OPTS[@]+"${JAVA_OPTS[@]}"} -cp "$OUT_DIR:$LIB_DIR/*" sim.SimulationRunner "$@" "$THREADS"
+else
+  java ${JAVA_OPTS[@]+"${JAVA_OPTS[@]}"} -cp "$OUT_DIR" sim.SimulationRunner "$@" "$THREADS"
+fi